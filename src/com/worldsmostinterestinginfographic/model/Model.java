@@ -18,6 +18,10 @@
 
 package com.worldsmostinterestinginfographic.model;
 
+import com.google.appengine.api.memcache.stdimpl.GCacheFactory;
+
+import com.worldsmostinterestinginfographic.util.NearCache;
+
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -46,9 +50,36 @@ public enum Model {
   public static final String FACEBOOK_REQUESTED_PROFILE_FIELDS;
   public static final String FACEBOOK_REQUESTED_FEED_FIELDS;
   public static final int MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST;
+  public static final int FACEBOOK_FEED_PAGE_SIZE;
+  public static final int FACEBOOK_FEED_FETCH_PARALLELISM;
+  public static final int GRAPH_REQUEST_THREADS;
+  public static final int STATISTICS_LATENCY_BUDGET_MILLIS;
+  public static final int STATISTICS_REQUEST_TIMEOUT_MILLIS;
+  public static final int STATISTICS_PREFETCH_BUDGET_MILLIS;
+  public static final int STATISTICS_THREADS;
+  public static final int STATISTICS_COLLECTION_TIMEOUT_MILLIS;
+  public static final int HEAVY_HITTERS_CAPACITY;
+  public static final int STATISTICS_CACHE_TTL_SECONDS;
+  public static final int STATISTICS_CACHE_SIZE;
+  public static final int STATISTICS_CACHE_RETENTION_SECONDS;
+  public static final int NEAR_CACHE_TTL_SECONDS;
+  public static final int NEAR_CACHE_SIZE;
+  public static final int SESSION_TTL_SECONDS;
+
+  public static final int HTTP_MAX_CONNECTIONS_TOTAL;
+  public static final int HTTP_MAX_CONNECTIONS_PER_ROUTE;
+  public static final int HTTP_CONNECT_TIMEOUT_MILLIS;
+  public static final int HTTP_SOCKET_TIMEOUT_MILLIS;
+  public static final int HTTP_CONNECTION_IDLE_TIMEOUT_MILLIS;
 
   public static Cache cache;
 
+  // In-process tier in front of the cache, for hot entries that are written once (e.g. session data)
+  public static NearCache nearCache;
+
+  // Shared cache for computed statistics, whose entries expire once they are no longer worth revalidating
+  public static Cache statisticsCache;
+
   private static final Logger log = Logger.getLogger(Model.INSTANCE.getClass().getName());
 
   static {
@@ -78,8 +109,66 @@ public enum Model {
     TOKEN_ENDPOINT = properties.getProperty("tokenEndpoint");
 
     FACEBOOK_API_ENDPOINT = "https://graph.facebook.com/v2.5/";
-    MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST = 200;
-    FACEBOOK_REQUESTED_PROFILE_FIELDS = "id,birthday,hometown,name,website,work";
-    FACEBOOK_REQUESTED_FEED_FIELDS = "id,name,type,message,status_type,created_time,from,likes%7Bid,name%7D";
+    MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST = getIntProperty(properties, "maxFacebookPostsToRequest", 5000);
+    FACEBOOK_FEED_PAGE_SIZE = 200;
+    FACEBOOK_FEED_FETCH_PARALLELISM = getIntProperty(properties, "facebookFeedFetchParallelism", 4);
+    GRAPH_REQUEST_THREADS = getIntProperty(properties, "graphRequestThreads", 8);
+    STATISTICS_LATENCY_BUDGET_MILLIS = getIntProperty(properties, "statisticsLatencyBudgetMillis", 1500);
+    STATISTICS_REQUEST_TIMEOUT_MILLIS = getIntProperty(properties, "statisticsRequestTimeoutMillis", 10000);
+    STATISTICS_PREFETCH_BUDGET_MILLIS = getIntProperty(properties, "statisticsPrefetchBudgetMillis", 3000);
+    STATISTICS_THREADS = getIntProperty(properties, "statisticsThreads", Runtime.getRuntime().availableProcessors());
+    STATISTICS_COLLECTION_TIMEOUT_MILLIS = getIntProperty(properties, "statisticsCollectionTimeoutMillis", 1000);
+    HEAVY_HITTERS_CAPACITY = getIntProperty(properties, "heavyHittersCapacity", 0);
+    STATISTICS_CACHE_TTL_SECONDS = getIntProperty(properties, "statisticsCacheTtlSeconds", 900);
+    STATISTICS_CACHE_SIZE = getIntProperty(properties, "statisticsCacheSize", 1000);
+    STATISTICS_CACHE_RETENTION_SECONDS = getIntProperty(properties, "statisticsCacheRetentionSeconds", 86400);
+    NEAR_CACHE_TTL_SECONDS = getIntProperty(properties, "nearCacheTtlSeconds", 30);
+    NEAR_CACHE_SIZE = getIntProperty(properties, "nearCacheSize", 10000);
+    SESSION_TTL_SECONDS = getIntProperty(properties, "sessionTtlSeconds", 86400);
+    FACEBOOK_REQUESTED_PROFILE_FIELDS = "id,birthday,hometown,name,timezone,website,work";
+    FACEBOOK_REQUESTED_FEED_FIELDS =
+        "id,name,type,message,status_type,created_time,from%7Bid,name%7D,likes%7Bid,name%7D";
+
+    HTTP_MAX_CONNECTIONS_TOTAL = getIntProperty(properties, "httpMaxConnectionsTotal", 50);
+    HTTP_MAX_CONNECTIONS_PER_ROUTE = getIntProperty(properties, "httpMaxConnectionsPerRoute", 20);
+    HTTP_CONNECT_TIMEOUT_MILLIS = getIntProperty(properties, "httpConnectTimeoutMillis", 5000);
+    HTTP_SOCKET_TIMEOUT_MILLIS = getIntProperty(properties, "httpSocketTimeoutMillis", 15000);
+    HTTP_CONNECTION_IDLE_TIMEOUT_MILLIS = getIntProperty(properties, "httpConnectionIdleTimeoutMillis", 30000);
+
+    // Front the cache with a near cache, now that it is known how big it may get and for how long it may hold entries
+    nearCache = (cache == null ? null : new NearCache(cache, NEAR_CACHE_SIZE, NEAR_CACHE_TTL_SECONDS * 1000L));
+
+    // Stale statistics are still served if the feed is unchanged, so they are kept for at least as long as they are
+    // fresh
+    try {
+      CacheFactory cacheFactory = CacheManager.getInstance().getCacheFactory();
+      statisticsCache = cacheFactory.createCache(Collections.singletonMap(
+          GCacheFactory.EXPIRATION_DELTA, Math.max(STATISTICS_CACHE_TTL_SECONDS, STATISTICS_CACHE_RETENTION_SECONDS)));
+    } catch (CacheException e) {
+      log.severe("Exception creating statistics cache: " + e.getMessage() + ": " + e.getStackTrace());
+      statisticsCache = null;
+    }
+  }
+
+  /**
+   * Reads an optional integer property, falling back to the given default if it is absent or malformed.
+   *
+   * @param properties The loaded project properties
+   * @param key The name of the property to read
+   * @param defaultValue The value to use if the property is absent or malformed
+   * @return The configured value of the property, or the default value
+   */
+  private static int getIntProperty(Properties properties, String key, int defaultValue) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      log.warning("Invalid value '" + value + "' for property " + key + ", using default of " + defaultValue);
+      return defaultValue;
+    }
   }
 }
@@ -0,0 +1,308 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.model.object;
+
+import java.io.Serializable;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A batch of Facebook posts (e.g. a page of a user's feed) laid out column by column, for scanning sequentially.
+ *
+ * Rather than one object per post, each holding further objects for its poster, likers and creation time, a batch
+ * keeps each field of all of its posts in a single primitive array:
+ *
+ * <ul>
+ *   <li>post types as <code>byte</code> codes (see <code>getType()</code>)</li>
+ *   <li>creation times as epoch seconds</li>
+ *   <li>poster IDs as <code>long</code>s</li>
+ *   <li>liker IDs of all posts back to back, with the likers of post <code>i</code> being those from
+ *   <code>getLikesStart(i)</code> to <code>getLikesEnd(i)</code></li>
+ *   <li>messages of all posts back to back in a single character buffer, with the message of post <code>i</code>
+ *   being the characters from <code>getMessageStart(i)</code> to <code>getMessageEnd(i)</code> of
+ *   <code>getMessages()</code></li>
+ * </ul>
+ *
+ * Each batch also refers to the pool its posters and likers were read through (see <code>getUsers()</code>), so that
+ * any of them may be looked up again by ID once the batch itself has been let go.
+ *
+ * Batches are immutable.
+ */
+public final class FeedBatch implements Serializable {
+
+  // Value of the type code of a post of unknown type
+  public static final byte NO_TYPE = -1;
+
+  // Value of the poster ID of a post with no known poster
+  public static final long NO_AUTHOR = Long.MIN_VALUE;
+
+  private static final Post.Type[] TYPES = Post.Type.values();
+
+  private final int size;
+  private final byte[] types;
+  private final long[] createdTimes;
+  private final long[] authorIds;
+  private final int[] likeOffsets;
+  private final long[] likerIds;
+  private final int[] messageOffsets;
+  private final char[] messages;
+  private final UserPool users;
+
+  private FeedBatch(Builder builder) {
+    this.size = builder.size;
+    this.types = Arrays.copyOf(builder.types, builder.size);
+    this.createdTimes = Arrays.copyOf(builder.createdTimes, builder.size);
+    this.authorIds = Arrays.copyOf(builder.authorIds, builder.size);
+    this.likeOffsets = Arrays.copyOf(builder.likeOffsets, builder.size + 1);
+    this.likerIds = Arrays.copyOf(builder.likerIds, builder.likeCount);
+    this.messageOffsets = Arrays.copyOf(builder.messageOffsets, builder.size + 1);
+    this.messages = new char[builder.messages.length()];
+    builder.messages.getChars(0, messages.length, messages, 0);
+    this.users = builder.users;
+  }
+
+  /**
+   * Lays out the given posts as a batch, interning their posters and likers in a new pool.
+   *
+   * @param posts The posts
+   * @return A batch of the given posts, in the same order
+   */
+  public static FeedBatch of(List<Post> posts) {
+    return of(posts, null);
+  }
+
+  /**
+   * Lays out the given posts as a batch.
+   *
+   * @param posts The posts
+   * @param users The pool the posts' posters and likers were read through, or null to intern them in a new pool
+   * @return A batch of the given posts, in the same order
+   */
+  public static FeedBatch of(List<Post> posts, UserPool users) {
+    Builder builder = new Builder(posts.size(), users);
+    for (Post post : posts) {
+      builder.add(post);
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * @return The pool the batch's posters and likers were read through, in which any of them may be looked up by ID
+   */
+  public UserPool getUsers() {
+    return users;
+  }
+
+  /**
+   * @return The number of posts in the batch
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The type of the post, or null if unknown
+   */
+  public Post.Type getType(int index) {
+    return types[index] == NO_TYPE ? null : TYPES[types[index]];
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The time the post was created, in seconds since the epoch, or <code>Post.NO_CREATED_TIME</code> if unknown
+   */
+  public long getCreatedTime(int index) {
+    return createdTimes[index];
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The ID of the user who made the post, or <code>NO_AUTHOR</code> if unknown
+   */
+  public long getAuthorId(int index) {
+    return authorIds[index];
+  }
+
+  /**
+   * @param userId The ID of a user
+   * @return Whether each post of the batch was made by the given user
+   */
+  public boolean[] authoredBy(long userId) {
+    boolean[] authored = new boolean[authorIds.length];
+    for (int i = 0; i < authored.length; i++) {
+      authored[i] = authorIds[i] == userId;
+    }
+
+    return authored;
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The index of the first liker of the post
+   */
+  public int getLikesStart(int index) {
+    return likeOffsets[index];
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The index after the last liker of the post
+   */
+  public int getLikesEnd(int index) {
+    return likeOffsets[index + 1];
+  }
+
+  /**
+   * @return The number of likes on all posts in the batch
+   */
+  public int getLikeCount() {
+    return likerIds.length;
+  }
+
+  /**
+   * @param likeIndex The index of a liker in the batch
+   * @return The ID of the liker
+   */
+  public long getLikerId(int likeIndex) {
+    return likerIds[likeIndex];
+  }
+
+  /**
+   * Returns the messages of all posts in the batch, back to back.  A new (read-only) view of the messages is returned
+   * on each call, so callers scanning many posts should hold on to one.
+   *
+   * @return The messages of all posts in the batch
+   */
+  public CharSequence getMessages() {
+    return CharBuffer.wrap(messages).asReadOnlyBuffer();
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The index in <code>getMessages()</code> of the first character of the post's message
+   */
+  public int getMessageStart(int index) {
+    return messageOffsets[index];
+  }
+
+  /**
+   * @param index The index of a post in the batch
+   * @return The index in <code>getMessages()</code> after the last character of the post's message
+   */
+  public int getMessageEnd(int index) {
+    return messageOffsets[index + 1];
+  }
+
+  /**
+   * Builds a batch one post at a time.
+   */
+  public static final class Builder {
+    private int size = 0;
+    private byte[] types;
+    private long[] createdTimes;
+    private long[] authorIds;
+    private int[] likeOffsets;
+    private int[] messageOffsets;
+    private int likeCount = 0;
+    private long[] likerIds;
+    private final StringBuilder messages;
+    private final UserPool users;
+    private final boolean interning;
+
+    /**
+     * @param expectedSize The number of posts the batch is expected to hold
+     */
+    public Builder(int expectedSize) {
+      this(expectedSize, null);
+    }
+
+    /**
+     * @param expectedSize The number of posts the batch is expected to hold
+     * @param users The pool the posters and likers of the posts to be added were read through, or null to intern them
+     *              in a new pool as they are added
+     */
+    public Builder(int expectedSize, UserPool users) {
+      int capacity = Math.max(expectedSize, 1);
+      types = new byte[capacity];
+      createdTimes = new long[capacity];
+      authorIds = new long[capacity];
+      likeOffsets = new int[capacity + 1];
+      messageOffsets = new int[capacity + 1];
+      likerIds = new long[capacity * 4];
+      messages = new StringBuilder(capacity * 64);
+      this.users = (users == null ? new UserPool() : users);
+      this.interning = (users == null);
+    }
+
+    /**
+     * Adds a post to the batch.
+     *
+     * @param post The post to add
+     * @return This builder
+     */
+    public Builder add(Post post) {
+      if (size == types.length) {
+        int capacity = size * 2;
+        types = Arrays.copyOf(types, capacity);
+        createdTimes = Arrays.copyOf(createdTimes, capacity);
+        authorIds = Arrays.copyOf(authorIds, capacity);
+        likeOffsets = Arrays.copyOf(likeOffsets, capacity + 1);
+        messageOffsets = Arrays.copyOf(messageOffsets, capacity + 1);
+      }
+
+      types[size] = post.getType() == null ? NO_TYPE : (byte) post.getType().ordinal();
+      createdTimes[size] = post.getCreatedTime();
+      authorIds[size] = post.getFrom() == null ? NO_AUTHOR : post.getFrom().getId();
+      if (interning && post.getFrom() != null) {
+        users.intern(post.getFrom());
+      }
+
+      List<User> likes = post.getLikes();
+      int likesSize = likes == null ? 0 : likes.size();
+      if (likeCount + likesSize > likerIds.length) {
+        int capacity = Math.max(likerIds.length * 2, likeCount + likesSize);
+        likerIds = Arrays.copyOf(likerIds, capacity);
+      }
+      for (int i = 0; i < likesSize; i++) {
+        User liker = likes.get(i);
+        if (interning) {
+          users.intern(liker);
+        }
+        likerIds[likeCount++] = liker.getId();
+      }
+
+      messages.append(post.getMessage());
+
+      size++;
+      likeOffsets[size] = likeCount;
+      messageOffsets[size] = messages.length();
+      return this;
+    }
+
+    /**
+     * @return A batch of the posts added so far
+     */
+    public FeedBatch build() {
+      return new FeedBatch(this);
+    }
+  }
+}
@@ -22,19 +22,38 @@ import com.google.appengine.labs.repackaged.org.json.JSONArray;
 import com.google.appengine.labs.repackaged.org.json.JSONException;
 import com.google.appengine.labs.repackaged.org.json.JSONObject;
 
-import java.io.Serializable;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import com.worldsmostinterestinginfographic.util.DateTimeUtils;
+import com.worldsmostinterestinginfographic.util.JsonStreamReader;
+import com.worldsmostinterestinginfographic.util.SerializationUtils;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 /**
  * Represents a Facebook Post object.
  *
+ * Posts are serialized in a compact, hand-written format (see <code>writeExternal</code>) rather than Java's default
+ * one, which would also describe every field and the list of likers.
+ *
  * @see <a href="https://developers.facebook.com/docs/graph-api/reference/v2.5/post">https://developers.facebook.com/docs/graph-api/reference/v2.5/post</a>
  */
-public final class Post implements Serializable {
+public final class Post implements Externalizable {
+
+  // Fixed so that changes to the class do not invalidate cached posts; the format itself is versioned below
+  private static final long serialVersionUID = 1L;
+
+  private static final byte SERIAL_FORMAT_VERSION = 1;
+
+  // Wire value of a missing type
+  private static final byte NO_TYPE = -1;
+
+  // Value of the created time of a post for which none is known; the same value DateTimeUtils returns for bad input
+  public static final long NO_CREATED_TIME = Long.MIN_VALUE;
 
   private String id;
   private Type type;
@@ -42,23 +61,40 @@ public final class Post implements Serializable {
   private String message;
   private String statusType;
   private List<User> likes;
-  private Calendar createdDate;
+  private long createdTime = NO_CREATED_TIME;
 
   public static enum Type {
     LINK, STATUS, PHOTO, VIDEO, OFFER, EVENT
   }
 
-  public Post(String id, Type type, User from, String message, String statusType, List<User> likes, Calendar createdDate) {
+  /**
+   * Creates an empty post, to be filled in by <code>readExternal</code>.  Required for deserialization only.
+   */
+  public Post() {
+  }
+
+  public Post(String id, Type type, User from, String message, String statusType, List<User> likes, long createdTime) {
     this.id = id;
     this.type = type;
     this.from = from;
     this.message = (message == null ? "" : message);
     this.statusType = (statusType == null ? "" : statusType);
     this.likes = likes;
-    this.createdDate = createdDate;
+    this.createdTime = createdTime;
   }
 
   public Post(String postJson) {
+    this(postJson, new UserPool());
+  }
+
+  /**
+   * Parses a post from the given JSON, reading its poster and likers through the given pool so that users already seen
+   * (e.g. on other posts of the same feed) are not duplicated.
+   *
+   * @param postJson The JSON of the post
+   * @param users The pool to intern the post's users in
+   */
+  public Post(String postJson, UserPool users) {
     if (postJson == null) {
       throw new IllegalArgumentException();
     }
@@ -78,25 +114,16 @@ public final class Post implements Serializable {
       // Get status type
       String statusType = postObject.has("status_type") ? postObject.getString("status_type") : null;
 
-      // Get created date
-      String createdDateString = postObject.has("created_time") ? postObject.getString("created_time") : null;
-      Calendar createdDate = null;
-      if (createdDateString != null) {
-        createdDate = Calendar.getInstance();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-        try {
-          createdDate.setTime(sdf.parse(createdDateString));// all done
-        } catch (ParseException e) {
-          e.printStackTrace();
-        }
-      }
+      // Get created time
+      String createdTimeString = postObject.has("created_time") ? postObject.getString("created_time") : null;
+      long createdTime = parseCreatedTime(createdTimeString);
 
       // Get poster
       User from = null;
       boolean hasFrom = postObject.has("from");
       if (hasFrom) {
         JSONObject fromObject = postObject.getJSONObject("from");
-        from = new User(Long.valueOf(fromObject.getString("id")), fromObject.getString("name"));
+        from = users.intern(new User(Long.valueOf(fromObject.getString("id")), fromObject.getString("name")));
       }
 
       // Get likes
@@ -106,7 +133,7 @@ public final class Post implements Serializable {
         JSONArray likesArray = postObject.getJSONObject("likes").getJSONArray("data");
         for (int i = 0; i < likesArray.length(); i++) {
           JSONObject likerObject = (JSONObject)likesArray.get(i);
-          User liker = new User(Long.valueOf(likerObject.getString("id")), likerObject.getString("name"));
+          User liker = users.intern(new User(Long.valueOf(likerObject.getString("id")), likerObject.getString("name")));
           likes.add(liker);
         }
       }
@@ -117,12 +144,170 @@ public final class Post implements Serializable {
       this.message = message;
       this.statusType = statusType;
       this.likes = likes;
-      this.createdDate = createdDate;
+      this.createdTime = createdTime;
     } catch (JSONException e) {
       e.printStackTrace();
     }
   }
 
+  /**
+   * Reads a post directly from the given JSON stream, which must be positioned at the start of a post object.
+   *
+   * Unlike <code>Post(String)</code>, no intermediate JSON tree or string copy of the post is created; the poster and
+   * likers are read straight into <code>User</code> objects and any fields not represented by this class are skipped.
+   *
+   * @param reader The JSON stream to read the post from
+   * @throws IOException If the stream could not be read or does not contain a valid post object
+   */
+  public Post(JsonStreamReader reader) throws IOException {
+    this(reader, new UserPool());
+  }
+
+  /**
+   * Reads a post directly from the given JSON stream, as <code>Post(JsonStreamReader)</code> does, reading its poster
+   * and likers through the given pool so that users already seen (e.g. on other posts of the same feed) are not
+   * duplicated.
+   *
+   * @param reader The JSON stream to read the post from
+   * @param users The pool to intern the post's users in
+   * @throws IOException If the stream could not be read or does not contain a valid post object
+   */
+  public Post(JsonStreamReader reader, UserPool users) throws IOException {
+    this.likes = new ArrayList<User>();
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (reader.peek() == JsonStreamReader.Token.NULL) {
+        reader.nextNull();
+        continue;
+      }
+
+      switch (name) {
+        case "id":
+          this.id = reader.nextString();
+          break;
+        case "type":
+          this.type = Post.Type.valueOf(reader.nextString().toUpperCase());
+          break;
+        case "message":
+          this.message = reader.nextString();
+          break;
+        case "status_type":
+          this.statusType = reader.nextString();
+          break;
+        case "created_time":
+          this.createdTime = parseCreatedTime(reader.nextString());
+          break;
+        case "from":
+          this.from = users.read(reader);
+          break;
+        case "likes":
+          readLikes(reader, users, this.likes);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+
+    if (this.message == null) {
+      this.message = "";
+    }
+  }
+
+  /**
+   * Reads the likers of a post from a Graph API 'likes' edge object, of the form
+   * <code>{"data":[...],"paging":{...}}</code>.
+   */
+  private static void readLikes(JsonStreamReader reader, UserPool users, List<User> likes) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("data".equals(reader.nextName())) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          likes.add(users.read(reader));
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * Parses a Graph API 'created_time' value (e.g. "2015-11-06T23:38:21+0000").
+   *
+   * @param createdTimeString The created time string, or null if absent
+   * @return The created time in seconds since the epoch, or <code>NO_CREATED_TIME</code> if absent or unparseable
+   */
+  private static long parseCreatedTime(String createdTimeString) {
+    return DateTimeUtils.parseIsoDateTime(createdTimeString);
+  }
+
+  /**
+   * Writes the post as: a version byte, the ID, the type (its ordinal as a byte, or -1 if missing), the poster (a
+   * presence flag then the user), the message and status type, the created time (8 bytes), and the likers (a count, or
+   * 0 if there is no list, followed by the users).  Strings and counts are written as described in
+   * <code>SerializationUtils</code>.
+   */
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    SerializationUtils.writeVersion(out, SERIAL_FORMAT_VERSION);
+    SerializationUtils.writeString(out, id);
+    out.writeByte(type == null ? NO_TYPE : type.ordinal());
+
+    out.writeBoolean(from != null);
+    if (from != null) {
+      from.writeExternal(out);
+    }
+
+    SerializationUtils.writeString(out, message);
+    SerializationUtils.writeString(out, statusType);
+    out.writeLong(createdTime);
+
+    // Likes are written off by one, leaving 0 to stand for no list at all
+    SerializationUtils.writeVarInt(out, likes == null ? 0 : likes.size() + 1);
+    if (likes != null) {
+      for (User liker : likes) {
+        liker.writeExternal(out);
+      }
+    }
+  }
+
+  @Override
+  public void readExternal(ObjectInput in) throws IOException {
+    SerializationUtils.readVersion(in, SERIAL_FORMAT_VERSION, Post.class);
+    id = SerializationUtils.readString(in);
+
+    byte typeOrdinal = in.readByte();
+    if (typeOrdinal != NO_TYPE && (typeOrdinal < 0 || typeOrdinal >= Type.values().length)) {
+      throw new StreamCorruptedException("Unknown post type " + typeOrdinal);
+    }
+    type = (typeOrdinal == NO_TYPE ? null : Type.values()[typeOrdinal]);
+
+    if (in.readBoolean()) {
+      from = new User();
+      from.readExternal(in);
+    }
+
+    message = SerializationUtils.readString(in);
+    statusType = SerializationUtils.readString(in);
+    createdTime = in.readLong();
+
+    int likeCount = SerializationUtils.readVarInt(in) - 1;
+    if (likeCount >= 0) {
+      likes = new ArrayList<User>(likeCount);
+      for (int i = 0; i < likeCount; i++) {
+        User liker = new User();
+        liker.readExternal(in);
+        likes.add(liker);
+      }
+    }
+  }
+
   public String getId() {
     return id;
   }
@@ -147,7 +332,14 @@ public final class Post implements Serializable {
     return likes;
   }
 
-  public Calendar getCreatedDate() {
-    return createdDate;
+  public boolean hasCreatedTime() {
+    return createdTime != NO_CREATED_TIME;
+  }
+
+  /**
+   * @return The time the post was created, in seconds since the epoch, or <code>NO_CREATED_TIME</code> if unknown
+   */
+  public long getCreatedTime() {
+    return createdTime;
   }
 }
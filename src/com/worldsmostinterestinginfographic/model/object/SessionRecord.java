@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.model.object;
+
+import com.worldsmostinterestinginfographic.util.SerializationUtils;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Everything known about a user's session, kept as a single cache entry so that it can be read or written in one round
+ * trip: the user's profile, their access token, when the session expires, and whether statistics were prefetched for
+ * the session when it started.
+ *
+ * Records are immutable, and serialized in a compact, hand-written format (see <code>writeExternal</code>).
+ */
+public final class SessionRecord implements Externalizable {
+
+  // Fixed so that changes to the class do not invalidate cached sessions; the format itself is versioned below
+  private static final long serialVersionUID = 1L;
+
+  private static final byte SERIAL_FORMAT_VERSION = 1;
+
+  private User user;
+  private String accessToken;
+  private long expiresMillis;
+  private boolean statisticsPrefetched;
+
+  /**
+   * Creates an empty record, to be filled in by <code>readExternal</code>.  Required for deserialization only.
+   */
+  public SessionRecord() {
+  }
+
+  /**
+   * @param user The user's profile
+   * @param accessToken The user's access token
+   * @param expiresMillis The time, in milliseconds since the epoch, at which the session expires
+   * @param statisticsPrefetched Whether statistics were prefetched for the session
+   */
+  public SessionRecord(User user, String accessToken, long expiresMillis, boolean statisticsPrefetched) {
+    if (user == null || accessToken == null) {
+      throw new IllegalArgumentException();
+    }
+
+    this.user = user;
+    this.accessToken = accessToken;
+    this.expiresMillis = expiresMillis;
+    this.statisticsPrefetched = statisticsPrefetched;
+  }
+
+  /**
+   * Writes the record as: a version byte, the user, the access token, the expiry time (8 bytes) and the prefetch flag.
+   */
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    SerializationUtils.writeVersion(out, SERIAL_FORMAT_VERSION);
+    user.writeExternal(out);
+    SerializationUtils.writeString(out, accessToken);
+    out.writeLong(expiresMillis);
+    out.writeBoolean(statisticsPrefetched);
+  }
+
+  @Override
+  public void readExternal(ObjectInput in) throws IOException {
+    SerializationUtils.readVersion(in, SERIAL_FORMAT_VERSION, SessionRecord.class);
+    user = new User();
+    user.readExternal(in);
+    accessToken = SerializationUtils.readString(in);
+    expiresMillis = in.readLong();
+    statisticsPrefetched = in.readBoolean();
+  }
+
+  public User getUser() {
+    return user;
+  }
+
+  public String getAccessToken() {
+    return accessToken;
+  }
+
+  /**
+   * @return The time, in milliseconds since the epoch, at which the session expires
+   */
+  public long getExpiresMillis() {
+    return expiresMillis;
+  }
+
+  /**
+   * @return Whether the session has expired
+   */
+  public boolean isExpired() {
+    return System.currentTimeMillis() >= expiresMillis;
+  }
+
+  /**
+   * @return Whether statistics were prefetched for the session when it started
+   */
+  public boolean isStatisticsPrefetched() {
+    return statisticsPrefetched;
+  }
+}
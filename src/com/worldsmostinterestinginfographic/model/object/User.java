@@ -21,21 +21,53 @@ package com.worldsmostinterestinginfographic.model.object;
 import com.google.appengine.labs.repackaged.org.json.JSONException;
 import com.google.appengine.labs.repackaged.org.json.JSONObject;
 
-import java.io.Serializable;
+import com.worldsmostinterestinginfographic.util.JsonStreamReader;
+import com.worldsmostinterestinginfographic.util.SerializationUtils;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 
 /**
  * Represents a Facebook User object.
  *
+ * Users are serialized in a compact, hand-written format (see <code>writeExternal</code>) rather than Java's default
+ * one, since they are carried by cached session records and posts.
+ *
+ * Users are shared (through user pools, the near cache and session records), so they are not to be modified once
+ * constructed; <code>withTimeZone</code> returns a copy instead.
+ *
  * @see <a href="https://developers.facebook.com/docs/graph-api/reference/v2.5/user">https://developers.facebook.com/docs/graph-api/reference/v2.5/user</a>
  */
-public final class User implements Serializable {
+public final class User implements Externalizable {
+
+  // Fixed so that changes to the class do not invalidate cached users; the format itself is versioned below
+  private static final long serialVersionUID = 1L;
+
+  private static final byte SERIAL_FORMAT_VERSION = 1;
 
   private long id;
   private String name;
+  private ZoneId timeZone;
+
+  /**
+   * Creates an empty user, to be filled in by <code>readExternal</code>.  Required for deserialization only.
+   */
+  public User() {
+  }
 
   public User(long id, String name) {
+    this(id, name, null);
+  }
+
+  public User(long id, String name, ZoneId timeZone) {
     this.id = id;
     this.name = name;
+    this.timeZone = timeZone;
   }
 
   public User(String userJson) {
@@ -47,13 +79,83 @@ public final class User implements Serializable {
       JSONObject userObject = new JSONObject(userJson);
       this.id = Long.valueOf(userObject.getString("id"));
       this.name = userObject.getString("name");
+
+      // Only the current user's own profile carries their time zone, as an offset from UTC in (possibly fractional)
+      // hours
+      if (userObject.has("timezone")) {
+        this.timeZone = parseTimeZone(userObject.getDouble("timezone"));
+      }
     } catch (JSONException e) {
       e.printStackTrace();
     }
   }
 
+  /**
+   * Converts a Graph API 'timezone' value to a zone offset.
+   *
+   * @param hours The offset from UTC in (possibly fractional) hours
+   * @return The corresponding offset, or UTC if the value is out of range
+   */
+  private static ZoneId parseTimeZone(double hours) {
+    try {
+      return ZoneOffset.ofTotalSeconds((int) Math.round(hours * 3600));
+    } catch (DateTimeException e) {
+      e.printStackTrace();
+      return ZoneOffset.UTC;
+    }
+  }
+
+  /**
+   * Reads a user directly from the given JSON stream, which must be positioned at the start of a user object.  Any
+   * fields other than 'id' and 'name' are skipped.
+   *
+   * @param reader The JSON stream to read the user from
+   * @throws IOException If the stream could not be read or does not contain a valid user object
+   */
+  public User(JsonStreamReader reader) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (reader.peek() == JsonStreamReader.Token.NULL) {
+        reader.nextNull();
+      } else if ("id".equals(name)) {
+        this.id = reader.nextLong();
+      } else if ("name".equals(name)) {
+        this.name = reader.nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * Writes the user as: a version byte, the ID (8 bytes), then the name and the time zone ID as (nullable) strings.
+   */
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    SerializationUtils.writeVersion(out, SERIAL_FORMAT_VERSION);
+    out.writeLong(id);
+    SerializationUtils.writeString(out, name);
+    SerializationUtils.writeString(out, timeZone == null ? null : timeZone.getId());
+  }
+
+  @Override
+  public void readExternal(ObjectInput in) throws IOException {
+    SerializationUtils.readVersion(in, SERIAL_FORMAT_VERSION, User.class);
+    id = in.readLong();
+    name = SerializationUtils.readString(in);
+
+    String timeZoneId = SerializationUtils.readString(in);
+    timeZone = (timeZoneId == null ? null : ZoneId.of(timeZoneId));
+  }
+
   @Override
   public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+
     if (obj == null || !(obj instanceof User)) {
       return false;
     }
@@ -63,7 +165,7 @@ public final class User implements Serializable {
 
   @Override
   public int hashCode() {
-    return (int)id;
+    return Long.hashCode(id);
   }
 
   public long getId() {
@@ -73,4 +175,19 @@ public final class User implements Serializable {
   public String getName() {
     return name;
   }
+
+  /**
+   * @return The user's time zone, or null if unknown
+   */
+  public ZoneId getTimeZone() {
+    return timeZone;
+  }
+
+  /**
+   * @param timeZone The time zone for the copy, or null if unknown
+   * @return A copy of this user with the given time zone
+   */
+  public User withTimeZone(ZoneId timeZone) {
+    return new User(id, name, timeZone);
+  }
 }
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.model.object;
+
+import com.worldsmostinterestinginfographic.util.JsonStreamReader;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pool of canonical <code>User</code> objects, one per Facebook user ID.
+ *
+ * The same friend typically appears many times over in a feed, as the poster of some posts and a liker of many more.
+ * Reading users through a pool means each of them is represented by a single <code>User</code> object (and a single
+ * copy of their name) however many times they appear, and lets equality checks between users of the same pool succeed
+ * on identity alone.  A pool is meant to live for as long as a single feed is being read, and is thread-safe, so the
+ * pages of a feed may be read concurrently.
+ *
+ * As each user in a feed goes through its pool, the pool also serves to look users up again by ID (see
+ * <code>get()</code>), e.g. to name a few of them once their IDs alone have been counted.
+ */
+public final class UserPool implements Serializable {
+
+  private final ConcurrentMap<Long, User> users = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the canonical user with the same ID as the given user, which becomes the canonical user if there is none.
+   *
+   * @param user The user to intern
+   * @return The canonical user with the given user's ID
+   */
+  public User intern(User user) {
+    User canonical = users.putIfAbsent(user.getId(), user);
+    return canonical == null ? user : canonical;
+  }
+
+  /**
+   * Reads a user from the given JSON stream, as <code>User(JsonStreamReader)</code> does, and interns it.
+   *
+   * Most users read through a pool are already in it, so once the ID has been read the name is only read (and a new
+   * <code>User</code> only created) if the pool has no user with that ID.  This relies on the ID coming before the name
+   * in the stream, as it does when the fields are requested in that order; otherwise the name has to be read anyway.
+   *
+   * @param reader The JSON stream to read the user from, positioned at the start of a user object
+   * @return The canonical user with the ID read
+   * @throws IOException If the stream could not be read or does not contain a valid user object
+   */
+  public User read(JsonStreamReader reader) throws IOException {
+    long id = 0;
+    String name = null;
+    User canonical = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String field = reader.nextName();
+      if (reader.peek() == JsonStreamReader.Token.NULL) {
+        reader.nextNull();
+      } else if ("id".equals(field)) {
+        id = reader.nextLong();
+        canonical = users.get(id);
+      } else if ("name".equals(field) && canonical == null) {
+        name = reader.nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return canonical != null ? canonical : intern(new User(id, name));
+  }
+
+  /**
+   * Looks up the canonical user with the given ID.
+   *
+   * @param id The ID of the user
+   * @return The canonical user with the given ID, or null if there is none in the pool
+   */
+  public User get(long id) {
+    return users.get(id);
+  }
+
+  /**
+   * @return The number of distinct users in the pool
+   */
+  public int size() {
+    return users.size();
+  }
+}
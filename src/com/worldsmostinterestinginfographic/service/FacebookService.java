@@ -18,20 +18,31 @@
 
 package com.worldsmostinterestinginfographic.service;
 
-import com.google.appengine.labs.repackaged.org.json.JSONArray;
-import com.google.appengine.labs.repackaged.org.json.JSONException;
-import com.google.appengine.labs.repackaged.org.json.JSONObject;
-
 import com.worldsmostinterestinginfographic.model.Model;
 import com.worldsmostinterestinginfographic.model.object.Post;
 import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.model.object.UserPool;
+import com.worldsmostinterestinginfographic.util.JsonStreamReader;
 import com.worldsmostinterestinginfographic.util.OAuth2Utils;
+import com.worldsmostinterestinginfographic.util.RequestExecutors;
+import com.worldsmostinterestinginfographic.util.ResponseBody;
+
+import org.apache.http.client.methods.HttpPost;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service class used to make requests for data to Facebook via OAuth 2 workflows.
+ *
+ * The asynchronous methods are built on the same blocking HttpClient as the synchronous ones: each request runs on the
+ * calling request's bounded Graph request executor (see <code>RequestExecutors</code>), holding one of its threads
+ * while in flight, and the caller is handed a future instead of waiting.  A non-blocking client (e.g. HttpAsyncClient)
+ * would free those threads, but is not among the application's libraries and needs its own long-lived I/O dispatch
+ * threads, which cannot be App Engine request threads.  The executor caps the cost at
+ * <code>Model.GRAPH_REQUEST_THREADS</code> threads per request instead.
  */
 public class FacebookService {
 
@@ -66,30 +77,200 @@ public class FacebookService {
    * @see <a href="https://developers.facebook.com/docs/facebook-login/permissions#reference-user_posts">https://developers.facebook.com/docs/facebook-login/permissions#reference-user_posts</a>
    */
   public List<Post> getFeedPosts(String accessToken) {
+    final List<Post> posts = new ArrayList<>();
+    getFeedPosts(accessToken, new FeedListener() {
+      @Override
+      public void onPosts(List<Post> page) {
+        posts.addAll(page);
+      }
+    });
 
-    // Construct feed API request
-    String requestUrl = Model.FACEBOOK_API_ENDPOINT + "me/feed?limit=" + Model.MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST +
-                        "&access_token=" + accessToken + "&fields=" + Model.FACEBOOK_REQUESTED_FEED_FIELDS;
+    return posts;
+  }
 
-    // Make feed request
-    String postsJson = OAuth2Utils.makeProtectedResourceRequest(requestUrl, accessToken);
+  /**
+   * Fetches the user's feed posts, handing them to the given listener a page at a time as they arrive.
+   *
+   * Beyond the first page, the user's history is split into time windows which are fetched concurrently, up to a total
+   * of <code>Model.MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST</code> posts.  This method blocks until fetching has
+   * finished.
+   *
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param listener The listener to receive each page of posts
+   * @return The outcome of the fetch
+   *
+   * @see <a href="https://developers.facebook.com/docs/graph-api/using-graph-api/#time">https://developers.facebook.com/docs/graph-api/using-graph-api/#time</a>
+   */
+  public FeedFetchResult getFeedPosts(String accessToken, FeedListener listener) {
+    return getFeedPosts(accessToken, listener, Long.MAX_VALUE);
+  }
 
-    // Convert posts JSON to posts list
-    List<Post> posts = new ArrayList<>();
+  /**
+   * Fetches as much of the user's feed as can be fetched before the given deadline, handing posts to the given listener
+   * a page at a time as they arrive.
+   *
+   * Pages continue to be requested until the deadline is close, at which point fetching stops and this method returns
+   * with whatever has been delivered so far.  If the deadline cut the fetch short, the result is marked as partial.
+   *
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param listener The listener to receive each page of posts
+   * @param deadlineMillis The time, in milliseconds since the epoch, by which this method must return
+   * @return The outcome of the fetch
+   */
+  public FeedFetchResult getFeedPosts(String accessToken, FeedListener listener, long deadlineMillis) {
+    RequestExecutors executors = new RequestExecutors();
     try {
-      JSONObject postsObject = new JSONObject(postsJson);
-      JSONArray postsArray = new JSONArray(postsObject.getString("data"));
+      return getFeedPostsAsync(accessToken, listener, deadlineMillis, executors).join();
+    } finally {
+      executors.shutdown();
+    }
+  }
+
+  /**
+   * Asynchronously fetches the user's profile.
+   *
+   * The request is made on the given Graph request executor, so the calling thread is free to do other work (e.g.
+   * fetch the user's feed at the same time).  Cancelling the returned future aborts the request.
+   *
+   * @param accessToken A valid access token with the 'public_profile' scope
+   * @param timeoutMillis The time to allow for the request, in milliseconds, after which the future completes
+   *                      exceptionally with a <code>TimeoutException</code> and the request is aborted
+   * @param executors The executors of the request on whose behalf the profile is fetched
+   * @return A future for the user profile; completes with null if the request failed
+   */
+  public CompletableFuture<User> getProfileAsync(final String accessToken, long timeoutMillis,
+                                                 RequestExecutors executors) {
+    String requestUrl = Model.FACEBOOK_API_ENDPOINT + "me?fields=" + Model.FACEBOOK_REQUESTED_PROFILE_FIELDS;
+    final HttpPost request = OAuth2Utils.createProtectedResourceRequest(requestUrl, accessToken);
+
+    final CompletableFuture<User> profile = new CompletableFuture<>();
+    executors.getGraphRequestExecutor().execute(() -> {
+      try {
+        if (profile.isDone()) {
+          return;
+        }
+
+        ResponseBody profileJson =
+            OAuth2Utils.makeProtectedResourceRequest(request, accessToken, ResponseBody.handler());
+        profile.complete(profileJson == null ? null : new User(profileJson.toString()));
+      } catch (RuntimeException e) {
+        profile.completeExceptionally(e);
+      }
+    });
+
+    // Abort the request if the caller gives up on it, or it times out
+    profile.whenComplete((user, throwable) -> {
+      if (throwable != null) {
+        request.abort();
+      }
+    });
+
+    return executors.withTimeout(profile, timeoutMillis);
+  }
+
+  /**
+   * Asynchronously fetches the ID of the most recent post in the user's feed, a cheap way of telling whether the feed
+   * has changed since it was last fetched (see <code>FeedFetchResult.getNewestPostId()</code>).  Cancelling the
+   * returned future aborts the request.
+   *
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param timeoutMillis The time to allow for the request, in milliseconds, after which the future completes
+   *                      exceptionally with a <code>TimeoutException</code> and the request is aborted
+   * @param executors The executors of the request on whose behalf the feed is checked
+   * @return A future for the ID of the most recent post; completes with null if the feed is empty or the request failed
+   */
+  public CompletableFuture<String> getNewestPostIdAsync(final String accessToken, long timeoutMillis,
+                                                        RequestExecutors executors) {
+    String requestUrl = Model.FACEBOOK_API_ENDPOINT + "me/feed?limit=1&fields=id";
+    final HttpPost request = OAuth2Utils.createProtectedResourceRequest(requestUrl, accessToken);
+
+    final CompletableFuture<String> newestPostId = new CompletableFuture<>();
+    executors.getGraphRequestExecutor().execute(() -> {
+      try {
+        if (newestPostId.isDone()) {
+          return;
+        }
+
+        ResponseBody feedJson = OAuth2Utils.makeProtectedResourceRequest(request, accessToken, ResponseBody.handler());
+        newestPostId.complete(feedJson == null ? null : readNewestPostId(feedJson));
+      } catch (IOException | RuntimeException e) {
+        newestPostId.completeExceptionally(e);
+      }
+    });
+
+    // Abort the request if the caller gives up on it, or it times out
+    newestPostId.whenComplete((id, throwable) -> {
+      if (throwable != null) {
+        request.abort();
+      }
+    });
+
+    return executors.withTimeout(newestPostId, timeoutMillis);
+  }
 
-      for (int i = 0; i < postsArray.length(); i++) {
-        Post post = new Post(postsArray.get(i).toString());
-        if (post != null) {
-          posts.add(post);
+  /**
+   * Asynchronously fetches as much of the user's feed as can be fetched before the given deadline, handing posts to the
+   * given listener a page at a time as they arrive.
+   *
+   * No thread is held waiting on the fetch: page requests run on the given Graph request executor and the fetch is
+   * advanced as each response arrives.  The returned future completes at the latest at the deadline, marked as partial
+   * if the deadline cut the fetch short.  Cancelling the returned future stops the fetch and aborts any outstanding
+   * requests.
+   *
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param listener The listener to receive each page of posts
+   * @param deadlineMillis The time, in milliseconds since the epoch, by which the fetch must complete, or
+   *                       <code>Long.MAX_VALUE</code> for no deadline
+   * @param executors The executors of the request on whose behalf the feed is fetched
+   * @return A future for the outcome of the fetch
+   */
+  public CompletableFuture<FeedFetchResult> getFeedPostsAsync(String accessToken, FeedListener listener,
+                                                              long deadlineMillis, RequestExecutors executors) {
+    return getFeedPostsAsync(accessToken, listener, deadlineMillis, new UserPool(), executors);
+  }
+
+  /**
+   * Asynchronously fetches the user's feed, as the overload without a pool does, reading the posters and likers of the
+   * posts through the given pool, in which they may later be looked up by ID.
+   *
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param listener The listener to receive each page of posts
+   * @param deadlineMillis The time, in milliseconds since the epoch, by which the fetch must complete, or
+   *                       <code>Long.MAX_VALUE</code> for no deadline
+   * @param users The pool to intern the posters and likers of the posts in
+   * @param executors The executors of the request on whose behalf the feed is fetched
+   * @return A future for the outcome of the fetch
+   */
+  public CompletableFuture<FeedFetchResult> getFeedPostsAsync(String accessToken, FeedListener listener,
+                                                              long deadlineMillis, UserPool users,
+                                                              RequestExecutors executors) {
+    return new FeedFetcher(accessToken, listener, deadlineMillis, users, executors).start();
+  }
+
+  /**
+   * Reads the ID of the first post of a Graph API feed response of the form <code>{"data":[...],...}</code>.
+   */
+  private static String readNewestPostId(ResponseBody feedJson) throws IOException {
+    String id = null;
+    try (JsonStreamReader reader = new JsonStreamReader(feedJson.getReader())) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("data".equals(reader.nextName()) && reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+          reader.beginArray();
+          if (reader.hasNext()) {
+            id = new Post(reader).getId();
+          }
+          while (reader.hasNext()) {
+            reader.skipValue();
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
         }
       }
-    } catch (JSONException e) {
-      e.printStackTrace();
+      reader.endObject();
     }
 
-    return posts;
+    return id;
   }
 }
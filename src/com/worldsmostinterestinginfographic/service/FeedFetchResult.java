@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.service;
+
+/**
+ * The outcome of fetching a user's feed.
+ */
+public final class FeedFetchResult {
+
+  private final int numberOfPosts;
+  private final boolean partial;
+  private final String newestPostId;
+
+  public FeedFetchResult(int numberOfPosts, boolean partial, String newestPostId) {
+    this.numberOfPosts = numberOfPosts;
+    this.partial = partial;
+    this.newestPostId = newestPostId;
+  }
+
+  /**
+   * @return The total number of posts fetched
+   */
+  public int getNumberOfPosts() {
+    return numberOfPosts;
+  }
+
+  /**
+   * Returns true if fetching was cut short, either by the deadline or by a failed request, before the whole of the
+   * requested history could be fetched.
+   *
+   * @return True if only part of the feed was fetched; false otherwise
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * Returns the ID of the most recent post in the feed, which changes whenever the user posts anew and so serves as a
+   * fingerprint of the feed.
+   *
+   * @return The ID of the most recent post, or null if no posts were fetched
+   */
+  public String getNewestPostId() {
+    return newestPostId;
+  }
+}
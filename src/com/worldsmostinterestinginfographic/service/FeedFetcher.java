@@ -0,0 +1,469 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.service;
+
+import com.worldsmostinterestinginfographic.model.Model;
+import com.worldsmostinterestinginfographic.model.object.Post;
+import com.worldsmostinterestinginfographic.model.object.UserPool;
+import com.worldsmostinterestinginfographic.util.JsonStreamReader;
+import com.worldsmostinterestinginfographic.util.OAuth2Utils;
+import com.worldsmostinterestinginfographic.util.RequestExecutors;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpPost;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Fetches a user's feed, beyond the first page, by splitting their history into time windows and fetching those windows
+ * concurrently.
+ *
+ * The first page is fetched on its own; the time it spans is used as the width of each subsequent window, so that a
+ * window holds roughly one page of posts.  Windows are then walked backwards in time using the Graph API 'since' and
+ * 'until' parameters, with at most <code>Model.FACEBOOK_FEED_FETCH_PARALLELISM</code> windows in flight at once, each
+ * one following its own 'paging.next' cursors.  Pages are handed to the <code>FeedListener</code> as soon as they
+ * arrive.
+ *
+ * Fetching stops once <code>Model.MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST</code> posts have been delivered, once a run
+ * of windows comes back empty (each empty window doubles the width of those that follow, so quiet periods are crossed
+ * quickly), or once the deadline, if any, draws near.
+ *
+ * The fetch is entirely event-driven: no thread waits on it.  Page requests run on the Graph request executor of the
+ * request on whose behalf the feed is fetched, and each response advances the fetch from whichever thread it arrived
+ * on.  All state below is guarded by <code>this</code>, which also serializes calls to the listener.
+ */
+final class FeedFetcher {
+
+  private static final Logger log = Logger.getLogger(FeedFetcher.class.getName());
+
+  // Nothing can have been posted before Facebook existed (2004-02-04)
+  private static final long FACEBOOK_EPOCH_SECONDS = 1075852800L;
+
+  private static final long MIN_WINDOW_SECONDS = 24L * 60 * 60;
+  private static final long MAX_WINDOW_SECONDS = 2L * 365 * 24 * 60 * 60;
+  private static final int MAX_PAGES_PER_WINDOW = 50;
+
+  private final String accessToken;
+  private final FeedListener listener;
+  private final long deadlineMillis;
+  private final RequestExecutors executors;
+  private final int maxPosts;
+  private final int parallelism;
+
+  private final CompletableFuture<FeedFetchResult> result = new CompletableFuture<>();
+  private final Set<HttpPost> requestsInFlight = ConcurrentHashMap.newKeySet();
+
+  // Every page of the feed shares one pool, so each friend is a single User however many posts they appear on
+  private final UserPool users;
+  private volatile boolean stopped = false;
+  private volatile long expectedPageMillis = 0;
+
+  private final Set<String> deliveredPostIds = new HashSet<>();
+  private final Map<Integer, Integer> postsPerWindow = new HashMap<>();
+  private ScheduledFuture<?> deadlineTimer;
+  private boolean partial = false;
+  private int numberOfPosts = 0;
+  private String newestPostId;
+  private long windowSeconds;
+  private long nextUntil;
+  private int nextWindow = 0;
+  private int oldestNonEmptyWindow = -1;
+  private int windowsInFlight = 0;
+
+  /**
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param listener The listener to receive each page of posts
+   * @param deadlineMillis The time, in milliseconds since the epoch, by which fetching must stop, or
+   *                       <code>Long.MAX_VALUE</code> for no deadline
+   * @param users The pool to intern the posters and likers of the posts in
+   * @param executors The executors of the request on whose behalf the feed is fetched
+   */
+  FeedFetcher(String accessToken, FeedListener listener, long deadlineMillis, UserPool users,
+              RequestExecutors executors) {
+    this.accessToken = accessToken;
+    this.users = users;
+    this.listener = listener;
+    this.deadlineMillis = deadlineMillis;
+    this.executors = executors;
+    this.maxPosts = Model.MAX_NUMBER_OF_FACEBOOK_POSTS_TO_REQUEST;
+    this.parallelism = Math.max(1, Model.FACEBOOK_FEED_FETCH_PARALLELISM);
+  }
+
+  /**
+   * Starts fetching the feed, delivering each page to the listener as it arrives.
+   *
+   * The returned future completes once fetching has finished or the deadline has been reached, whichever comes first.
+   * No new page is requested once the time remaining before the deadline is less than a typical page takes to arrive,
+   * and any requests still outstanding at the deadline are aborted.  In either case the result is marked as partial.
+   * No page is delivered to the listener after the future has completed.
+   *
+   * Cancelling the returned future stops the fetch and aborts any outstanding requests.
+   *
+   * @return A future for the outcome of the fetch
+   */
+  CompletableFuture<FeedFetchResult> start() {
+    result.whenComplete((fetchResult, throwable) -> stop());
+
+    synchronized (this) {
+      if (deadlineMillis != Long.MAX_VALUE) {
+        deadlineTimer =
+            executors.getScheduler().schedule(this::onDeadline, remainingMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+
+    // Fetch the most recent page on its own to learn how densely the user posts
+    execute(() -> onFirstPage(fetchPage(feedUrl(null, null))));
+
+    return result;
+  }
+
+  private synchronized void onFirstPage(FeedPage firstPage) {
+    if (stopped) {
+      return;
+    }
+
+    if (firstPage == null) {
+      partial = true;
+      finish();
+      return;
+    }
+
+    if (!firstPage.posts.isEmpty()) {
+      newestPostId = firstPage.posts.get(0).getId();
+    }
+
+    deliver(firstPage.posts);
+
+    // A short page does not mean the end of the feed, as Graph drops posts hidden by privacy settings from each page
+    if (firstPage.next == null || firstPage.posts.isEmpty() || numberOfPosts >= maxPosts) {
+      finish();
+      return;
+    }
+
+    Long newest = createdTimeSeconds(firstPage.posts.get(0));
+    Long oldest = createdTimeSeconds(firstPage.posts.get(firstPage.posts.size() - 1));
+    if (newest == null || oldest == null) {
+      finish();
+      return;
+    }
+
+    // Walk backwards through the rest of the history, a window at a time
+    windowSeconds = Math.max(newest - oldest, MIN_WINDOW_SECONDS);
+    nextUntil = oldest;
+    scheduleWindows();
+  }
+
+  private synchronized void onWindowPage(int window, List<Post> posts) {
+    if (stopped) {
+      return;
+    }
+
+    int delivered = deliver(posts);
+    Integer count = postsPerWindow.get(window);
+    postsPerWindow.put(window, (count == null ? 0 : count) + delivered);
+  }
+
+  private synchronized void onWindowDone(int window) {
+    if (stopped) {
+      return;
+    }
+
+    windowsInFlight--;
+    if (postsPerWindow.containsKey(window)) {
+      oldestNonEmptyWindow = Math.max(oldestNonEmptyWindow, window);
+    } else {
+      windowSeconds = Math.min(windowSeconds * 2, MAX_WINDOW_SECONDS);
+    }
+
+    scheduleWindows();
+  }
+
+  private synchronized void onDeadline() {
+    if (stopped) {
+      return;
+    }
+
+    log.warning("Deadline reached with " + windowsInFlight + " feed windows outstanding; returning " + numberOfPosts +
+                " posts");
+    partial = true;
+    finish();
+  }
+
+  /**
+   * Submits as many further windows as the parallelism, the post limit, the history and the deadline allow, finishing
+   * the fetch if there is nothing left in flight.
+   */
+  private void scheduleWindows() {
+    while (windowsInFlight < parallelism && numberOfPosts < maxPosts && nextUntil > FACEBOOK_EPOCH_SECONDS
+           && nextWindow - oldestNonEmptyWindow - 1 < parallelism) {
+      if (isDeadlineClose()) {
+        partial = true;
+        break;
+      }
+
+      long since = Math.max(nextUntil - windowSeconds, FACEBOOK_EPOCH_SECONDS);
+      submitWindow(nextWindow++, since, nextUntil);
+      windowsInFlight++;
+      nextUntil = since;
+    }
+
+    if (windowsInFlight == 0) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    if (deadlineTimer != null) {
+      deadlineTimer.cancel(false);
+    }
+
+    stopped = true;
+    result.complete(new FeedFetchResult(numberOfPosts, partial, newestPostId));
+  }
+
+  /**
+   * Stops the fetch, aborting any requests still in flight so that their threads and connections are freed promptly.
+   */
+  private void stop() {
+    stopped = true;
+    for (HttpPost request : requestsInFlight) {
+      request.abort();
+    }
+  }
+
+  /**
+   * Submits a task to fetch all pages of the given time window.
+   */
+  private void submitWindow(final int window, final long since, final long until) {
+    execute(() -> {
+      try {
+        String url = feedUrl(since, until);
+        for (int pages = 0; url != null && pages < MAX_PAGES_PER_WINDOW && !stopped; pages++) {
+          if (pages > 0 && isDeadlineClose()) {
+            synchronized (FeedFetcher.this) {
+              partial = true;
+            }
+            break;
+          }
+
+          FeedPage page = fetchPage(url);
+          if (page == null) {
+            synchronized (FeedFetcher.this) {
+              partial = true;
+            }
+            break;
+          }
+          if (page.posts.isEmpty()) {
+            break;
+          }
+
+          // Cursors are not guaranteed to honour 'since', so trim anything that has spilled past the window
+          List<Post> posts = new ArrayList<>(page.posts.size());
+          boolean spilled = false;
+          for (Post post : page.posts) {
+            Long createdTime = createdTimeSeconds(post);
+            if (createdTime != null && createdTime < since) {
+              spilled = true;
+            } else {
+              posts.add(post);
+            }
+          }
+
+          if (!posts.isEmpty()) {
+            onWindowPage(window, posts);
+          }
+
+          url = spilled ? null : page.next;
+        }
+      } finally {
+        onWindowDone(window);
+      }
+    });
+  }
+
+  /**
+   * Runs the given task on the Graph request executor, failing the whole fetch should the task throw.
+   */
+  private void execute(final Runnable task) {
+    executors.getGraphRequestExecutor().execute(() -> {
+      try {
+        task.run();
+      } catch (RuntimeException | Error e) {
+        log.severe("Fatal exception occurred while fetching the feed: " + e);
+        result.completeExceptionally(e);
+      }
+    });
+  }
+
+  /**
+   * Hands the given posts to the listener, dropping any that have already been delivered and any beyond the maximum
+   * number of posts to request.
+   *
+   * @return The number of posts delivered
+   */
+  private int deliver(List<Post> posts) {
+    List<Post> newPosts = new ArrayList<>(posts.size());
+    for (Post post : posts) {
+      if (numberOfPosts + newPosts.size() >= maxPosts) {
+        break;
+      }
+      if (post.getId() == null || deliveredPostIds.add(post.getId())) {
+        newPosts.add(post);
+      }
+    }
+
+    if (newPosts.isEmpty()) {
+      return 0;
+    }
+
+    numberOfPosts += newPosts.size();
+    listener.onPosts(newPosts);
+
+    return newPosts.size();
+  }
+
+  private long remainingMillis() {
+    return Math.max(0, deadlineMillis - System.currentTimeMillis());
+  }
+
+  /**
+   * Returns true if the deadline is too close for another page to be expected to arrive in time.
+   */
+  private boolean isDeadlineClose() {
+    return remainingMillis() <= expectedPageMillis;
+  }
+
+  private String feedUrl(Long since, Long until) {
+    String url = Model.FACEBOOK_API_ENDPOINT + "me/feed?limit=" + Model.FACEBOOK_FEED_PAGE_SIZE +
+                 "&access_token=" + accessToken + "&fields=" + Model.FACEBOOK_REQUESTED_FEED_FIELDS;
+    if (since != null) {
+      url += "&since=" + since;
+    }
+    if (until != null) {
+      url += "&until=" + until;
+    }
+
+    return url;
+  }
+
+  private FeedPage fetchPage(String url) {
+    if (stopped) {
+      return null;
+    }
+
+    HttpPost request = OAuth2Utils.createProtectedResourceRequest(url, accessToken);
+    requestsInFlight.add(request);
+
+    long start = System.currentTimeMillis();
+    FeedPage page;
+    try {
+      page = OAuth2Utils.makeProtectedResourceRequest(request, accessToken, httpResponse -> {
+        HttpEntity entity = httpResponse.getEntity();
+        if (entity == null) {
+          return null;
+        }
+
+        try (JsonStreamReader reader = new JsonStreamReader(new InputStreamReader(entity.getContent(),
+                                                                                  StandardCharsets.UTF_8))) {
+          return readFeedPage(reader, users);
+        }
+      });
+    } finally {
+      requestsInFlight.remove(request);
+    }
+
+    // Keep a moving average of how long a page takes to arrive
+    long elapsed = System.currentTimeMillis() - start;
+    long expected = expectedPageMillis;
+    expectedPageMillis = (expected == 0 ? elapsed : (3 * expected + elapsed) / 4);
+
+    return page;
+  }
+
+  /**
+   * Reads a page of a Graph API feed response of the form <code>{"data":[...],"paging":{"next":...}}</code>.  An error
+   * response, or any other response without a 'data' array, yields an empty page.
+   *
+   * @param reader The JSON stream positioned at the start of the feed response
+   * @param users The pool to intern the posters and likers of the page's posts in
+   * @return The page of posts contained in the feed response
+   * @throws IOException If the stream could not be read or is malformed
+   */
+  private static FeedPage readFeedPage(JsonStreamReader reader, UserPool users) throws IOException {
+    List<Post> posts = new ArrayList<>(Model.FACEBOOK_FEED_PAGE_SIZE);
+    String next = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("data".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          posts.add(new Post(reader, users));
+        }
+        reader.endArray();
+      } else if ("paging".equals(name)) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          if ("next".equals(reader.nextName()) && reader.peek() == JsonStreamReader.Token.STRING) {
+            next = reader.nextString();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return new FeedPage(posts, next);
+  }
+
+  private static Long createdTimeSeconds(Post post) {
+    return post.hasCreatedTime() ? post.getCreatedTime() : null;
+  }
+
+  /**
+   * A single page of a feed response.
+   */
+  private static final class FeedPage {
+    private final List<Post> posts;
+    private final String next;
+
+    private FeedPage(List<Post> posts, String next) {
+      this.posts = posts;
+      this.next = next;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.service;
+
+import com.worldsmostinterestinginfographic.model.object.Post;
+
+import java.util.List;
+
+/**
+ * Receives the posts of a user's feed, one page at a time, as they are fetched.
+ */
+public interface FeedListener {
+
+  /**
+   * Called once for each page of posts as it arrives.  Pages may arrive in any order, but a given post is delivered at
+   * most once.  Calls may be made from any thread, but all calls for a single fetch are made one at a time, and each
+   * call happens-before the next and before the fetch completes.
+   *
+   * @param posts The posts of the page
+   */
+  public void onPosts(List<Post> posts);
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.service;
+
+import com.worldsmostinterestinginfographic.model.Model;
+import com.worldsmostinterestinginfographic.model.object.SessionRecord;
+
+/**
+ * Service class used to save and load session records.
+ *
+ * Each session is stored as a single <code>SessionRecord</code> entry under <code>&lt;session&gt;.session</code>, read
+ * and written through <code>Model.nearCache</code>, so that loading a session costs at most one round trip to the
+ * shared cache (and usually none at all).  Expired records are treated as though they were not there, and removed
+ * from the cache when found.
+ */
+public class SessionStore {
+
+  /**
+   * Saves the given session record, replacing any previous record for the session.
+   *
+   * @param sessionId The ID of the session
+   * @param session The session record
+   */
+  public void save(String sessionId, SessionRecord session) {
+    Model.nearCache.put(key(sessionId), session);
+  }
+
+  /**
+   * Loads the record of the given session.
+   *
+   * @param sessionId The ID of the session
+   * @return The session record, or null if there is none or it has expired
+   */
+  public SessionRecord load(String sessionId) {
+    SessionRecord session = (SessionRecord) Model.nearCache.get(key(sessionId));
+    if (session != null && session.isExpired()) {
+      remove(sessionId);
+      return null;
+    }
+
+    return session;
+  }
+
+  /**
+   * Removes the record of the given session.
+   *
+   * @param sessionId The ID of the session
+   */
+  public void remove(String sessionId) {
+    Model.nearCache.remove(key(sessionId));
+  }
+
+  private static String key(String sessionId) {
+    return sessionId + ".session";
+  }
+}
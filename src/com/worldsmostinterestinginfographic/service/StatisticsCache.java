@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.service;
+
+import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.util.NearCache;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.cache.Cache;
+
+/**
+ * A cache of computed statistics responses, by Facebook user ID and time zone.
+ *
+ * Some statistics (e.g. the daily and monthly post frequencies) depend on the time zone they were computed in, so the
+ * same user is cached separately for each time zone they have been seen in.
+ *
+ * Each entry holds the complete statistics response for a user along with a fingerprint of the feed it was computed
+ * from (the ID of the most recent post).  An entry is fresh for a configurable time-to-live, during which it may be
+ * served as is; once stale, it may still be served if the user's feed turns out to be unchanged, i.e. still has the
+ * same fingerprint.  Entries are expired by the backing cache itself, which should therefore keep them for longer than
+ * the time-to-live for stale entries to be of any use.
+ *
+ * Entries are kept in a shared backing cache, so that an entry computed on one instance can be served by any other,
+ * and read through a <code>NearCache</code>, so that hot entries are served from memory.  Lookups and their outcomes
+ * are counted, and reported by <code>toString()</code>.
+ *
+ * This class is thread-safe.
+ */
+final class StatisticsCache {
+
+  private final NearCache entries;
+  private final long ttlMillis;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong staleHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param backingCache The shared cache to keep entries in, or null to disable the cache altogether
+   * @param maxEntries The most entries to hold in memory; zero to rely on the backing cache alone
+   * @param nearTtlMillis The time, in milliseconds, for which an entry is held in memory
+   * @param ttlMillis The time, in milliseconds, for which an entry is fresh; zero to disable the cache altogether
+   */
+  StatisticsCache(Cache backingCache, int maxEntries, long nearTtlMillis, long ttlMillis) {
+    if (ttlMillis < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.entries = (backingCache == null ? null : new NearCache(backingCache, maxEntries, nearTtlMillis));
+    this.ttlMillis = (backingCache == null ? 0 : ttlMillis);
+  }
+
+  /**
+   * Looks up the cached statistics for the given user in their time zone, fresh or stale.
+   *
+   * @param user The user
+   * @return The cached statistics, or null if there are none
+   */
+  Entry get(User user) {
+    if (ttlMillis == 0) {
+      return null;
+    }
+
+    Entry entry = (Entry) entries.get(key(user));
+    if (entry == null) {
+      misses.incrementAndGet();
+    } else if (entry.isFresh()) {
+      hits.incrementAndGet();
+    } else {
+      staleHits.incrementAndGet();
+    }
+
+    return entry;
+  }
+
+  /**
+   * Caches the given statistics for the given user in their time zone, fresh from now.
+   *
+   * @param user The user
+   * @param fingerprint The fingerprint of the feed the statistics were computed from
+   * @param statistics The JSON statistics response
+   */
+  void put(User user, String fingerprint, String statistics) {
+    if (ttlMillis == 0) {
+      return;
+    }
+
+    entries.put(key(user), new Entry(statistics, fingerprint, System.currentTimeMillis() + ttlMillis));
+  }
+
+  /**
+   * Makes the given stale entry fresh again, once the user's feed is known to be unchanged since it was computed.
+   *
+   * @param user The user
+   * @param entry The entry to refresh
+   */
+  void refresh(User user, Entry entry) {
+    put(user, entry.fingerprint, entry.statistics);
+  }
+
+  @Override
+  public String toString() {
+    return "StatisticsCache[hits=" + hits + ", staleHits=" + staleHits + ", misses=" + misses + ", " + entries + "]";
+  }
+
+  private static String key(User user) {
+    return "user." + user.getId() + "." + (user.getTimeZone() == null ? "" : user.getTimeZone().getId()) + ".stats";
+  }
+
+  /**
+   * The cached statistics of a single user.
+   */
+  static final class Entry implements Serializable {
+
+    // Fixed so that changes to the class do not invalidate entries cached by other instances or earlier deploys
+    private static final long serialVersionUID = 1L;
+
+    private final String statistics;
+    private final String fingerprint;
+    private final long expiresMillis;
+
+    private Entry(String statistics, String fingerprint, long expiresMillis) {
+      this.statistics = statistics;
+      this.fingerprint = fingerprint;
+      this.expiresMillis = expiresMillis;
+    }
+
+    /**
+     * @return The JSON statistics response
+     */
+    String getStatistics() {
+      return statistics;
+    }
+
+    /**
+     * @return The fingerprint of the feed the statistics were computed from
+     */
+    String getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * @return Whether the entry is still within its time-to-live
+     */
+    boolean isFresh() {
+      return System.currentTimeMillis() < expiresMillis;
+    }
+  }
+}
@@ -0,0 +1,495 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.service;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.QueueFailureException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.taskqueue.TransientFailureException;
+
+import com.worldsmostinterestinginfographic.model.Model;
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
+import com.worldsmostinterestinginfographic.model.object.Post;
+import com.worldsmostinterestinginfographic.model.object.SessionRecord;
+import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.model.object.UserPool;
+import com.worldsmostinterestinginfographic.statistics.collect.CompositeStatisticsCollector;
+import com.worldsmostinterestinginfographic.statistics.collect.DailyPostFrequencyCollector;
+import com.worldsmostinterestinginfographic.statistics.collect.MonthlyPostFrequencyCollector;
+import com.worldsmostinterestinginfographic.statistics.collect.PostTypesCollector;
+import com.worldsmostinterestinginfographic.statistics.collect.TopFriendsCollector;
+import com.worldsmostinterestinginfographic.statistics.collect.TopWordsCollector;
+import com.worldsmostinterestinginfographic.statistics.result.InfographicResult;
+import com.worldsmostinterestinginfographic.statistics.result.StatisticsResult;
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
+import com.worldsmostinterestinginfographic.util.LoggingUtils;
+import com.worldsmostinterestinginfographic.util.RequestExecutors;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Service class used to compute the statistics response for a user, from fetching their feed through to the final JSON
+ * response expected by the infographic page.
+ *
+ * Statistics may be prefetched as soon as a session has an access token (i.e. before the infographic page has asked for
+ * them).  The prefetch has to outlive the request that starts it, which redirects straight away, and no request thread
+ * may do that, so it is run by a push queue task instead (see <code>schedulePrefetch()</code>): a request of its own,
+ * which lasts for as long as the prefetch does.  A prefetch that is still in flight on this instance is tracked in
+ * memory; once finished, its result is parked in <code>Model.cache</code> under <code>&lt;session&gt;.stats</code>,
+ * where a later request on any instance can pick it up.  Either way, a prefetched result is handed out at most once.
+ */
+public class StatisticsService {
+
+  private static final Logger log = Logger.getLogger(StatisticsService.class.getName());
+
+  // Where prefetch tasks are sent (see PrefetchServlet), and the names of their parameters
+  public static final String PREFETCH_TASK_URL = "/tasks/prefetch";
+  public static final String PREFETCH_SESSION_PARAMETER = "session";
+  public static final String PREFETCH_ACCESS_TOKEN_PARAMETER = "token";
+  public static final String PREFETCH_TIME_ZONE_PARAMETER = "tz";
+
+  // Rough size, in characters, of a complete statistics response
+  private static final int RESPONSE_SIZE_HINT = 4096;
+
+  private static final ConcurrentMap<String, CompletableFuture<String>> prefetches = new ConcurrentHashMap<>();
+
+  private static final StatisticsCache statisticsCache =
+      new StatisticsCache(Model.statisticsCache, Model.STATISTICS_CACHE_SIZE, Model.NEAR_CACHE_TTL_SECONDS * 1000L,
+                          Model.STATISTICS_CACHE_TTL_SECONDS * 1000L);
+
+  // Results come back in the order the collectors are registered here
+  private static final CompositeStatisticsCollector statisticsCollector = new CompositeStatisticsCollector(
+      new TopFriendsCollector(Model.HEAVY_HITTERS_CAPACITY),
+      new PostTypesCollector(),
+      new DailyPostFrequencyCollector(),
+      new MonthlyPostFrequencyCollector(),
+      new TopWordsCollector(Model.HEAVY_HITTERS_CAPACITY));
+
+  private final FacebookService facebookService;
+
+  public StatisticsService() {
+    facebookService = new FacebookService();
+  }
+
+  /**
+   * Schedules a prefetch of the statistics for the given session, as a task on the default push queue.  The task is
+   * handled by <code>PrefetchServlet</code>, which calls <code>prefetchStatistics()</code>.
+   *
+   * @param sessionId The ID of the user's session
+   * @param accessToken A valid access token with the 'public_profile' and 'user_posts' scopes
+   * @param timeZone The time zone to collect statistics in, or null for the one on the user's profile
+   * @return Whether a prefetch was scheduled (there is none if <code>Model.STATISTICS_PREFETCH_BUDGET_MILLIS</code> is
+   *         0, or if the task could not be added)
+   */
+  public boolean schedulePrefetch(String sessionId, String accessToken, ZoneId timeZone) {
+    if (Model.STATISTICS_PREFETCH_BUDGET_MILLIS <= 0) {
+      return false;
+    }
+
+    TaskOptions task = TaskOptions.Builder.withUrl(PREFETCH_TASK_URL)
+        .param(PREFETCH_SESSION_PARAMETER, sessionId)
+        .param(PREFETCH_ACCESS_TOKEN_PARAMETER, accessToken);
+    if (timeZone != null) {
+      task.param(PREFETCH_TIME_ZONE_PARAMETER, timeZone.getId());
+    }
+
+    try {
+      QueueFactory.getDefaultQueue().add(task);
+    } catch (QueueFailureException | TransientFailureException e) {
+      log.severe("[" + sessionId + "] Error encountered while scheduling statistics prefetch: " + e.getMessage());
+      e.printStackTrace();
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Computes the statistics for the given session ahead of the infographic page asking for them.  Called on behalf of
+   * the prefetch task scheduled by <code>schedulePrefetch()</code>.
+   *
+   * The user's profile need not have arrived yet: the feed fetch starts straight away, alongside the profile request,
+   * and pages that arrive before the profile are held until it does.  Once the profile has arrived, the prefetch is
+   * abandoned (unless already claimed) if the user's statistics are already cached, leaving them to be served from the
+   * cache instead.
+   *
+   * The prefetch runs on the given executors, which must be those of the prefetch task's request; the task must not
+   * shut them down (and so must not finish) before the returned future has completed.
+   *
+   * @param sessionId The ID of the user's session
+   * @param profile A future for the user for whom to collect statistics for
+   * @param accessToken A valid access token with the 'user_posts' scope
+   * @param executors The executors of the request on whose behalf the statistics are prefetched
+   * @return A future that completes once the prefetch has finished and its result has been parked (or claimed), or null
+   *         if no prefetch was started (there is none if <code>Model.STATISTICS_PREFETCH_BUDGET_MILLIS</code> is 0)
+   */
+  public CompletableFuture<?> prefetchStatistics(final String sessionId, CompletableFuture<User> profile,
+                                                 String accessToken, RequestExecutors executors) {
+    if (Model.STATISTICS_PREFETCH_BUDGET_MILLIS <= 0) {
+      return null;
+    }
+
+    log.info("[" + sessionId + "] Prefetching statistics");
+
+    long deadline = System.currentTimeMillis() + Model.STATISTICS_PREFETCH_BUDGET_MILLIS;
+    final CompletableFuture<String> prefetch = computeStatistics(sessionId, profile, accessToken, deadline, executors);
+    prefetches.put(sessionId, prefetch);
+
+    // Nothing to fetch if the user's statistics are already cached
+    profile.thenAccept(user -> {
+      StatisticsCache.Entry cached = (user == null ? null : statisticsCache.get(user));
+      if (cached != null && cached.isFresh() && prefetches.remove(sessionId, prefetch)) {
+        log.info("[" + sessionId + "] Statistics already cached, abandoning prefetch");
+        prefetch.cancel(true);
+      }
+    });
+
+    // Unless it has been claimed in the meantime, park the finished result where any instance can find it.  The result
+    // is parked before the prefetch stops being tracked, so that a request looking for it always finds one or the
+    // other; should the prefetch have been claimed after all, the parked result is taken back.
+    return prefetch.whenComplete((statistics, throwable) -> {
+      if (throwable != null) {
+        prefetches.remove(sessionId, prefetch);
+        return;
+      }
+
+      if (prefetches.get(sessionId) == prefetch) {
+        Model.cache.put(sessionId + ".stats", statistics);
+        if (!prefetches.remove(sessionId, prefetch)) {
+          Model.cache.remove(sessionId + ".stats");
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the statistics for the given session.
+   *
+   * If statistics for the session have been prefetched, the prefetch is claimed and returned, whether it is still in
+   * flight or already finished; should a claimed prefetch fail, the statistics are computed afresh instead.  Failing
+   * that, the user's cached statistics are returned if fresh, or if stale but the user's feed is unchanged since they
+   * were computed.  Otherwise, statistics are computed from scratch, with the feed fetch bounded by the given deadline.
+   * Cancelling the returned future cancels the underlying feed fetch.
+   *
+   * @param sessionId The ID of the user's session
+   * @param session The record of the user's session
+   * @param deadlineMillis The time, in milliseconds since the epoch, by which fetching of feed data must stop
+   * @param executors The executors of the request on whose behalf the statistics are fetched
+   * @return A future for the JSON statistics response
+   */
+  public CompletableFuture<String> getStatistics(String sessionId, SessionRecord session, long deadlineMillis,
+                                                 RequestExecutors executors) {
+    User user = session.getUser();
+    String accessToken = session.getAccessToken();
+
+    // Only sessions that started a prefetch can have one to claim, so the others are spared the trip to the cache
+    if (session.isStatisticsPrefetched()) {
+      CompletableFuture<String> prefetch = prefetches.remove(sessionId);
+      if (prefetch != null) {
+        log.info("[" + sessionId + "] Attaching to prefetched statistics");
+        return recoverPrefetch(sessionId, prefetch, user, accessToken, deadlineMillis, executors);
+      }
+
+      Object statistics = Model.cache.remove(sessionId + ".stats");
+      if (statistics != null) {
+        log.info("[" + sessionId + "] Using prefetched statistics");
+        return CompletableFuture.completedFuture(statistics.toString());
+      }
+    }
+
+    StatisticsCache.Entry cached = statisticsCache.get(user);
+    if (cached != null && cached.isFresh()) {
+      log.info("[" + sessionId + "] Using cached statistics " + statisticsCache);
+      return CompletableFuture.completedFuture(cached.getStatistics());
+    }
+
+    if (cached != null) {
+      return revalidateStatistics(sessionId, user, accessToken, deadlineMillis, cached, executors);
+    }
+
+    return computeStatistics(sessionId, CompletableFuture.completedFuture(user), accessToken, deadlineMillis,
+                             executors);
+  }
+
+  /**
+   * Returns the result of the given (claimed) prefetch, or, should the prefetch fail, computes the statistics afresh.
+   * Cancelling the returned future cancels the prefetch, or the computation that replaced it.
+   */
+  private CompletableFuture<String> recoverPrefetch(final String sessionId, final CompletableFuture<String> prefetch,
+                                                    final User user, final String accessToken,
+                                                    final long deadlineMillis, final RequestExecutors executors) {
+    final CompletableFuture<String> statistics = new CompletableFuture<>();
+    prefetch.whenComplete((result, throwable) -> {
+      if (statistics.isDone()) {
+        return;
+      }
+
+      if (throwable == null) {
+        statistics.complete(result);
+        return;
+      }
+
+      log.warning("[" + sessionId + "] Prefetch failed, computing statistics afresh: " + throwable);
+      final CompletableFuture<String> computed =
+          computeStatistics(sessionId, CompletableFuture.completedFuture(user), accessToken, deadlineMillis,
+                            executors);
+      computed.whenComplete((computedResult, failure) -> {
+        if (failure == null) {
+          statistics.complete(computedResult);
+        } else {
+          statistics.completeExceptionally(failure);
+        }
+      });
+      statistics.whenComplete((ignored, failure) -> {
+        if (statistics.isCancelled()) {
+          computed.cancel(true);
+        }
+      });
+    });
+
+    statistics.whenComplete((result, throwable) -> {
+      if (statistics.isCancelled()) {
+        prefetch.cancel(true);
+      }
+    });
+
+    return statistics;
+  }
+
+  /**
+   * Returns the given stale statistics if the user's feed is unchanged since they were computed, or computes them
+   * afresh otherwise.  Only the most recent post is requested to tell, so an unchanged feed costs a single, small Graph
+   * request rather than a fetch of the whole feed.
+   */
+  private CompletableFuture<String> revalidateStatistics(final String sessionId, final User user,
+                                                         final String accessToken, final long deadlineMillis,
+                                                         final StatisticsCache.Entry cached,
+                                                         final RequestExecutors executors) {
+    final CompletableFuture<String> statistics = new CompletableFuture<>();
+    final CompletableFuture<String> newestPostId =
+        facebookService.getNewestPostIdAsync(accessToken, Math.max(0, deadlineMillis - System.currentTimeMillis()),
+                                             executors);
+
+    newestPostId.whenComplete((postId, throwable) -> {
+      if (statistics.isDone()) {
+        return;
+      }
+
+      if (throwable == null && postId != null && postId.equals(cached.getFingerprint())) {
+        log.info("[" + sessionId + "] Feed unchanged, using cached statistics " + statisticsCache);
+        statisticsCache.refresh(user, cached);
+        statistics.complete(cached.getStatistics());
+        return;
+      }
+
+      final CompletableFuture<String> computed =
+          computeStatistics(sessionId, CompletableFuture.completedFuture(user), accessToken, deadlineMillis,
+                            executors);
+      computed.whenComplete((result, failure) -> {
+        if (failure == null) {
+          statistics.complete(result);
+        } else {
+          statistics.completeExceptionally(failure);
+        }
+      });
+      statistics.whenComplete((result, failure) -> {
+        if (statistics.isCancelled()) {
+          computed.cancel(true);
+        }
+      });
+    });
+
+    statistics.whenComplete((result, throwable) -> {
+      if (statistics.isCancelled()) {
+        newestPostId.cancel(true);
+      }
+    });
+
+    return statistics;
+  }
+
+  /**
+   * Fetches the user's feed and collects statistics from it.  Each page of posts is handed to the collectors as soon as
+   * it arrives, so posts are not held on to once counted and only the (comparatively cheap) finishing of the statistics
+   * is left once the feed has been fetched.
+   *
+   * Collectors run in parallel with one another on the request's bounded statistics executor, rather than on whichever
+   * thread delivered the page.  Once the feed has been fetched, all collectors must have finished within
+   * <code>Model.STATISTICS_COLLECTION_TIMEOUT_MILLIS</code>, or the statistics fail with a timeout.
+   *
+   * The feed fetch does not wait for the user's profile; pages that arrive before it are held (see
+   * <code>PageCollector</code>).  Should the profile not arrive, the statistics fail and the feed fetch is stopped.
+   */
+  private CompletableFuture<String> computeStatistics(final String sessionId, CompletableFuture<User> profile,
+                                                      String accessToken, long deadlineMillis,
+                                                      final RequestExecutors executors) {
+    log.info("[" + sessionId + "] Access token " + LoggingUtils.anonymize(accessToken) + ".  Requesting feed data.");
+
+    final Executor executor = executors.getStatisticsExecutor();
+    final PageCollector pages = new PageCollector(executor);
+    final CompletableFuture<FeedFetchResult> feedFetch =
+        facebookService.getFeedPostsAsync(accessToken, pages, deadlineMillis, pages.users, executors);
+    final CompletableFuture<CompositeStatisticsCollector.State> collecting = profile.thenApply(user -> {
+      if (user == null) {
+        throw new IllegalStateException("No profile to collect statistics for");
+      }
+
+      return pages.start(user);
+    });
+    collecting.whenComplete((state, throwable) -> {
+      if (throwable != null) {
+        feedFetch.cancel(true);
+      }
+    });
+
+    CompletableFuture<String> statistics = feedFetch.thenCompose(feedFetchResult -> collecting.thenCompose(state -> {
+      User user = pages.getUser();
+      if (feedFetchResult.getNumberOfPosts() <= 0) {
+        return CompletableFuture.completedFuture("[]");
+      }
+
+      log.info("[" + sessionId + "] Received " + feedFetchResult.getNumberOfPosts() +
+               (feedFetchResult.isPartial() ? " (partial)" : "") +
+               " stories for user " + LoggingUtils.anonymize(Objects.toString(user.getId())) +
+               ". Collecting statistics...");
+
+      return executors.withTimeout(statisticsCollector.finishAsync(state, executor),
+                                   Model.STATISTICS_COLLECTION_TIMEOUT_MILLIS)
+          .thenApply(results -> {
+            String response = buildResponse(sessionId, results, feedFetchResult);
+
+            // Only statistics of the whole feed are worth reusing
+            if (!feedFetchResult.isPartial() && !response.isEmpty()) {
+              statisticsCache.put(user, feedFetchResult.getNewestPostId(), response);
+            }
+
+            return response;
+          });
+    }));
+
+    statistics.whenComplete((result, throwable) -> {
+      if (throwable != null) {
+        pages.cancel();
+        feedFetch.cancel(true);
+      }
+    });
+
+    return statistics;
+  }
+
+  /**
+   * Hands each page of posts to the collectors as it arrives.  The collectors' state can only be created once the
+   * user's profile is known, so pages that arrive before then are laid out as batches and held until it is.  The feed
+   * is read through the collector's own user pool, in which the collectors may look users up by ID once counted.
+   */
+  private static final class PageCollector implements FeedListener {
+    private final Executor executor;
+    private final UserPool users = new UserPool();
+
+    private List<FeedBatch> held = new ArrayList<>();
+    private User user;
+    private CompositeStatisticsCollector.State state;
+
+    private PageCollector(Executor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public synchronized void onPosts(List<Post> page) {
+      if (state != null) {
+        statisticsCollector.acceptAsync(state, FeedBatch.of(page, users), executor);
+      } else if (held != null) {
+        held.add(FeedBatch.of(page, users));
+      }
+    }
+
+    /**
+     * Creates the collectors' state for the given user, and hands any pages held so far to the collectors.
+     */
+    private synchronized CompositeStatisticsCollector.State start(User user) {
+      this.user = user;
+      state = statisticsCollector.createState(user);
+      for (FeedBatch batch : held) {
+        statisticsCollector.acceptAsync(state, batch, executor);
+      }
+      held = null;
+
+      return state;
+    }
+
+    private synchronized User getUser() {
+      return user;
+    }
+
+    /**
+     * Drops any pages held so far, and abandons any work submitted to the collectors that has not yet started.
+     */
+    private synchronized void cancel() {
+      held = null;
+      if (state != null) {
+        statisticsCollector.cancel(state);
+      }
+    }
+  }
+
+  /**
+   * Constructs the JSON response containing all statistics data.  Each result writes itself straight into the response,
+   * so no intermediate JSON string or object is created per result.
+   *
+   * @param sessionId The ID of the user's session, for logging purposes
+   * @param results The results of the registered collectors
+   * @param feedFetchResult The outcome of fetching the posts
+   * @return The JSON response string
+   */
+  private String buildResponse(String sessionId, List<StatisticsResult> results, FeedFetchResult feedFetchResult) {
+    StringWriter response = new StringWriter(RESPONSE_SIZE_HINT);
+    try {
+      JsonStreamWriter writer = new JsonStreamWriter(response);
+      writer.beginObject();
+      writeResult(writer, "TOP_FRIENDS", results.get(0));
+      writeResult(writer, "POST_TYPES", results.get(1));
+      writeResult(writer, "DAILY_POST_FREQUENCY", results.get(2));
+      writeResult(writer, "MONTHLY_POST_FREQUENCY", results.get(3));
+      writeResult(writer, "TOP_WORDS", results.get(4));
+      writer.name("PARTIAL").value(feedFetchResult.isPartial());
+      writer.endObject();
+    } catch (IOException e) {
+      log.severe("[" + sessionId + "] Error encountered while constructing response JSON: " + e.getMessage());
+      e.printStackTrace();
+      return "";
+    }
+
+    return response.toString();
+  }
+
+  private static void writeResult(JsonStreamWriter writer, String name, StatisticsResult result) throws IOException {
+    writer.name(name);
+    ((InfographicResult) result).writeInfographicJson(writer);
+  }
+}
@@ -19,20 +19,30 @@
 package com.worldsmostinterestinginfographic.servlet;
 
 import com.worldsmostinterestinginfographic.model.Model;
+import com.worldsmostinterestinginfographic.model.object.SessionRecord;
 import com.worldsmostinterestinginfographic.model.object.User;
 import com.worldsmostinterestinginfographic.service.FacebookService;
+import com.worldsmostinterestinginfographic.service.SessionStore;
+import com.worldsmostinterestinginfographic.service.StatisticsService;
 import com.worldsmostinterestinginfographic.util.LoggingUtils;
 import com.worldsmostinterestinginfographic.util.OAuth2Utils;
+import com.worldsmostinterestinginfographic.util.RequestExecutors;
 
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -45,9 +55,13 @@ public class CallbackServlet extends HttpServlet {
   private static final Logger log = Logger.getLogger(CallbackServlet.class.getName());
 
   private final FacebookService facebookService;
+  private final SessionStore sessionStore;
+  private final StatisticsService statisticsService;
 
   public CallbackServlet() {
     facebookService = new FacebookService();
+    sessionStore = new SessionStore();
+    statisticsService = new StatisticsService();
   }
 
   /**
@@ -58,6 +72,11 @@ public class CallbackServlet extends HttpServlet {
    * OAuth 2 specification [RFC 6749]. If no authorization code is detected, the authorization code is expired, or any
    * other errors occur, the user will be sent to an error page.
    *
+   * Computation of the user's statistics is scheduled as a task before the request for their profile is made, so that
+   * their feed is already being fetched while the profile arrives, and the statistics are underway (or finished) by the
+   * time the infographic page asks for them.  The task is a request of its own, so this request finishes (and the
+   * browser is redirected) as soon as the profile has arrived.
+   *
    * @param request  The HTTP request sent by the client
    * @param response The HTTP response that the server will send back to the client
    *
@@ -86,11 +105,35 @@ public class CallbackServlet extends HttpServlet {
         return;
       }
 
+      // Prefer the time zone reported by the browser, which (unlike the offset on the profile) knows about daylight
+      // saving
+      final ZoneId timeZone = getBrowserTimeZone(request);
+
+      // Get a head start on the statistics while the profile arrives, and while the browser follows the redirect and
+      // renders the page
+      boolean prefetched = statisticsService.schedulePrefetch(request.getSession().getId(), accessToken, timeZone);
+
       // Get profile data
       log.info("[" + request.getSession().getId() + "] Access token " + LoggingUtils.anonymize(accessToken)
                + " received.  Requesting profile data.");
 
-      User user = facebookService.getProfile(accessToken);
+      RequestExecutors executors = new RequestExecutors();
+      User user;
+      try {
+        user = facebookService.getProfileAsync(
+            accessToken, Model.HTTP_CONNECT_TIMEOUT_MILLIS + Model.HTTP_SOCKET_TIMEOUT_MILLIS, executors).join();
+      } catch (CancellationException | CompletionException e) {
+        log.severe("[" + request.getSession().getId() + "] Error encountered while requesting profile data: " +
+                   e.getMessage());
+        user = null;
+      } finally {
+        executors.shutdown();
+      }
+
+      if (user != null && timeZone != null) {
+        user = user.withTimeZone(timeZone);
+      }
+
       if (user == null) {
         response.sendRedirect("/uh-oh");
         return;
@@ -100,8 +143,8 @@ public class CallbackServlet extends HttpServlet {
       log.info("[" + request.getSession().getId() + "] Hello, " + LoggingUtils.anonymize(Objects.toString(user.getId()))
                + "!");
 
-      Model.cache.put(request.getSession().getId() + ".profile", user);
-      Model.cache.put(request.getSession().getId() + ".token", accessToken);
+      long expires = System.currentTimeMillis() + Model.SESSION_TTL_SECONDS * 1000L;
+      sessionStore.save(request.getSession().getId(), new SessionRecord(user, accessToken, expires, prefetched));
 
       response.sendRedirect("/you-rock");
 
@@ -124,4 +167,28 @@ public class CallbackServlet extends HttpServlet {
       response.sendRedirect("/uh-oh");
     }
   }
+
+  /**
+   * Returns the time zone reported by the browser in the 'tz' cookie (see wmiig.js), if any.
+   *
+   * @param request The HTTP request sent by the client
+   * @return The browser's time zone, or null if not reported or not recognized
+   */
+  private static ZoneId getBrowserTimeZone(HttpServletRequest request) {
+    if (request.getCookies() == null) {
+      return null;
+    }
+
+    for (Cookie cookie : request.getCookies()) {
+      if ("tz".equals(cookie.getName())) {
+        try {
+          return ZoneId.of(URLDecoder.decode(cookie.getValue(), StandardCharsets.UTF_8.name()));
+        } catch (DateTimeException | IOException | IllegalArgumentException e) {
+          log.warning("[" + request.getSession().getId() + "] Unrecognized time zone: " + cookie.getValue());
+        }
+      }
+    }
+
+    return null;
+  }
 }
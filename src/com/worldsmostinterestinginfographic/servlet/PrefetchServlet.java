@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.servlet;
+
+import com.worldsmostinterestinginfographic.model.Model;
+import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.service.FacebookService;
+import com.worldsmostinterestinginfographic.service.StatisticsService;
+import com.worldsmostinterestinginfographic.util.RequestExecutors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet to handle the push queue tasks that prefetch a session's statistics (see
+ * <code>StatisticsService.schedulePrefetch()</code>).
+ */
+public class PrefetchServlet extends HttpServlet {
+
+  private static final Logger log = Logger.getLogger(PrefetchServlet.class.getName());
+
+  private final FacebookService facebookService;
+  private final StatisticsService statisticsService;
+
+  public PrefetchServlet() {
+    facebookService = new FacebookService();
+    statisticsService = new StatisticsService();
+  }
+
+  /**
+   * Servlet to handle a task to prefetch the statistics of a session.
+   *
+   * The user's profile is requested alongside their feed, so that the feed is already being fetched while the profile
+   * arrives.  The task's request lasts until the prefetch has finished and its result has been parked for the session's
+   * infographic page to pick up (or the page has claimed it), which is bounded by
+   * <code>Model.STATISTICS_PREFETCH_BUDGET_MILLIS</code>.  The prefetch is not retried should it fail, as the page
+   * computes the statistics itself in that case.
+   *
+   * @param request  The HTTP request sent by the task queue
+   * @param response The HTTP response that the server will send back to the task queue
+   */
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+
+    // Only the task queue may start a prefetch (App Engine strips this header from external requests)
+    if (request.getHeader("X-AppEngine-QueueName") == null) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    String sessionId = request.getParameter(StatisticsService.PREFETCH_SESSION_PARAMETER);
+    String accessToken = request.getParameter(StatisticsService.PREFETCH_ACCESS_TOKEN_PARAMETER);
+    if (StringUtils.isEmpty(sessionId) || StringUtils.isEmpty(accessToken)) {
+      log.severe("Prefetch task is missing its session or access token");
+      return;
+    }
+
+    final ZoneId timeZone =
+        getTimeZone(sessionId, request.getParameter(StatisticsService.PREFETCH_TIME_ZONE_PARAMETER));
+    RequestExecutors executors = new RequestExecutors();
+    try {
+      CompletableFuture<User> profile = facebookService.getProfileAsync(
+          accessToken, Model.HTTP_CONNECT_TIMEOUT_MILLIS + Model.HTTP_SOCKET_TIMEOUT_MILLIS, executors).thenApply(
+              user -> user != null && timeZone != null ? user.withTimeZone(timeZone) : user);
+
+      CompletableFuture<?> prefetch = statisticsService.prefetchStatistics(sessionId, profile, accessToken, executors);
+      if (prefetch != null) {
+        prefetch.join();
+      }
+    } catch (CancellationException | CompletionException e) {
+      log.warning("[" + sessionId + "] Statistics prefetch did not complete: " + e.getMessage());
+    } finally {
+      executors.shutdown();
+    }
+  }
+
+  /**
+   * Returns the time zone with the given ID, as reported by the browser when the session was started.
+   *
+   * @param sessionId The ID of the session, for logging purposes
+   * @param timeZoneId The ID of the time zone, or null if none was reported
+   * @return The time zone, or null if none was reported or it is not recognized
+   */
+  private static ZoneId getTimeZone(String sessionId, String timeZoneId) {
+    if (timeZoneId == null) {
+      return null;
+    }
+
+    try {
+      return ZoneId.of(timeZoneId);
+    } catch (DateTimeException e) {
+      log.warning("[" + sessionId + "] Unrecognized time zone: " + timeZoneId);
+      return null;
+    }
+  }
+}
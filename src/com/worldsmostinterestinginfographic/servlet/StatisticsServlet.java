@@ -18,28 +18,22 @@
 
 package com.worldsmostinterestinginfographic.servlet;
 
-import com.google.appengine.labs.repackaged.org.json.JSONException;
 import com.google.appengine.labs.repackaged.org.json.JSONObject;
 
 import com.worldsmostinterestinginfographic.model.Model;
-import com.worldsmostinterestinginfographic.model.object.Post;
-import com.worldsmostinterestinginfographic.model.object.User;
-import com.worldsmostinterestinginfographic.service.FacebookService;
-import com.worldsmostinterestinginfographic.statistics.collect.DailyPostFrequencyCollector;
-import com.worldsmostinterestinginfographic.statistics.collect.MonthlyPostFrequencyCollector;
-import com.worldsmostinterestinginfographic.statistics.collect.PostTypesCollector;
-import com.worldsmostinterestinginfographic.statistics.collect.StatisticsCollector;
-import com.worldsmostinterestinginfographic.statistics.collect.TopFriendsCollector;
-import com.worldsmostinterestinginfographic.statistics.collect.TopWordsCollector;
-import com.worldsmostinterestinginfographic.statistics.result.InfographicResult;
-import com.worldsmostinterestinginfographic.statistics.result.StatisticsResult;
-import com.worldsmostinterestinginfographic.util.LoggingUtils;
+import com.worldsmostinterestinginfographic.model.object.SessionRecord;
+import com.worldsmostinterestinginfographic.service.SessionStore;
+import com.worldsmostinterestinginfographic.service.StatisticsService;
+import com.worldsmostinterestinginfographic.util.RequestExecutors;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -52,87 +46,136 @@ public class StatisticsServlet extends HttpServlet {
 
   private static final Logger log = Logger.getLogger(StatisticsServlet.class.getName());
 
-  private final FacebookService facebookService;
+  // Time held back from the latency budget for collecting statistics and writing the response
+  private static final int COLLECTION_RESERVE_MILLIS = 250;
+
+  private final SessionStore sessionStore;
+  private final StatisticsService statisticsService;
 
   public StatisticsServlet() {
-    facebookService = new FacebookService();
+    sessionStore = new SessionStore();
+    statisticsService = new StatisticsService();
   }
 
   /**
    * Servlet to handle request to fetch statistics data for a user.
    *
-   * Will check for valid session data from the cache, including a valid access token.  If present, will attempt to make
-   * a protected resource request for the user's feed data using the access token.  Once the feed data has been
-   * returned, statistics will be collected, and the responses returned.
+   * Will check for a valid session record in the cache, including a valid access token.  If there is none, or it has
+   * expired, an error payload is returned.  Otherwise, will attempt to make a protected resource request for the user's
+   * feed data using the access token.  Once the feed data has been returned, statistics will be collected, and the
+   * responses returned.
+   *
+   * Feed data is fetched for at most <code>Model.STATISTICS_LATENCY_BUDGET_MILLIS</code> (less a small reserve for
+   * collecting statistics).  If the budget runs out before the whole feed has been fetched, statistics are collected
+   * from whatever has arrived and the response is marked with <code>"PARTIAL": true</code>.
+   *
+   * If statistics were prefetched when the session was started, the response attaches to that prefetch, whether it is
+   * still in flight or already finished, rather than fetching the feed again.
+   *
+   * The request is processed asynchronously: the container thread is released as soon as the feed request has been
+   * started, and the response is resumed once the feed data has arrived.  Should no response have been written within
+   * <code>Model.STATISTICS_REQUEST_TIMEOUT_MILLIS</code>, an error payload is returned instead.  Either way, the
+   * request's executors are shut down once the response is complete, so that none of its threads outlive it.
    *
    * @param request  The HTTP request sent by the client
    * @param response The HTTP response that the server will send back to the client
    */
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    long deadline = System.currentTimeMillis() + Model.STATISTICS_LATENCY_BUDGET_MILLIS - COLLECTION_RESERVE_MILLIS;
+    final String sessionId = request.getSession().getId();
 
     // Fetch session data from cache
-    User user = (User) Model.cache.get(request.getSession().getId() + ".profile");
-    if (user == null) {
-      log.severe("[" + request.getSession().getId() + "] Invalid session, no profile found in cache");
-    }
-
-    String accessToken = Objects.toString(Model.cache.get(request.getSession().getId() + ".token"));
-    if (accessToken == null) {
-      log.severe("[" + request.getSession().getId() + "] Invalid session, no token found in cache");
+    SessionRecord session = sessionStore.load(sessionId);
+    if (session == null) {
+      log.severe("[" + sessionId + "] Invalid session, no session record found in cache");
+      response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+      response.setContentType("application/json");
+      response.getWriter().println("{\"ERROR\":" + JSONObject.quote("Invalid session") + "}");
+      return;
     }
 
-    // Get feed data
-    log.info("[" + request.getSession().getId() + "] Access token " + LoggingUtils.anonymize(accessToken)
-             + ".  Requesting feed data.");
+    final AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(Model.STATISTICS_REQUEST_TIMEOUT_MILLIS);
+
+    final AtomicBoolean responded = new AtomicBoolean();
+    final RequestExecutors executors = new RequestExecutors();
+    final CompletableFuture<String> statistics =
+        statisticsService.getStatistics(sessionId, session, deadline, executors);
+
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) throws IOException {
+        log.severe("[" + sessionId + "] Timed out while fetching statistics");
+        statistics.cancel(true);
+        writeError(asyncContext, responded, HttpServletResponse.SC_GATEWAY_TIMEOUT, "Timed out fetching feed data");
+      }
+
+      @Override
+      public void onError(AsyncEvent event) throws IOException {
+        log.severe("[" + sessionId + "] Error encountered while fetching statistics: " + event.getThrowable());
+        statistics.cancel(true);
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) throws IOException {
+        executors.shutdown();
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) throws IOException {
+      }
+    });
+
+    // Resume the response once the statistics are ready
+    statistics.whenComplete((result, throwable) -> {
+      if (statistics.isCancelled()) {
+        return;
+      }
+
+      try {
+        if (throwable != null) {
+          log.severe("[" + sessionId + "] Error encountered while fetching statistics: " + throwable);
+          writeError(asyncContext, responded, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error fetching feed data");
+          return;
+        }
+
+        if (responded.compareAndSet(false, true)) {
+          asyncContext.getResponse().getWriter().println(result);
+          asyncContext.complete();
+        }
+      } catch (IOException | RuntimeException e) {
+        log.severe("[" + sessionId + "] Error encountered while writing statistics response: " + e.getMessage());
+        e.printStackTrace();
+        if (responded.compareAndSet(false, true)) {
+          asyncContext.complete();
+        }
+      }
+    });
+  }
 
-    List<Post> posts = facebookService.getFeedPosts(accessToken);
-    if (posts.size() <= 0) {
-      response.getWriter().println("[]");
+  /**
+   * Writes an error payload of the form <code>{"ERROR":"..."}</code> with the given status and completes the response,
+   * unless a response has already been written.
+   *
+   * @param asyncContext The asynchronous context of the request
+   * @param responded Whether a response has already been written for the request
+   * @param status The HTTP status code to respond with
+   * @param message The error message
+   */
+  private static void writeError(AsyncContext asyncContext, AtomicBoolean responded, int status, String message)
+      throws IOException {
+    if (!responded.compareAndSet(false, true)) {
       return;
     }
 
-    log.info("[" + request.getSession().getId() + "] Received " + posts.size() + " stories for user " +
-             LoggingUtils.anonymize(Objects.toString(user.getId())) + ". Collecting statistics...");
-
-    // Create statistics collectors
-    StatisticsCollector topFriendsCollector = new TopFriendsCollector();
-    StatisticsCollector postTypesCollector = new PostTypesCollector();
-    StatisticsCollector dailyPostFrequencyCollector = new DailyPostFrequencyCollector();
-    StatisticsCollector monthlyPostFrequencyCollector = new MonthlyPostFrequencyCollector();
-    StatisticsCollector topWordsCollector = new TopWordsCollector();
-
-    // Collect statistics
-    StatisticsResult topFriendsResult = topFriendsCollector.collect(user, posts);
-    StatisticsResult postTypesResult = postTypesCollector.collect(user, posts);
-    StatisticsResult dailyPostFrequencyResult = dailyPostFrequencyCollector.collect(user, posts);
-    StatisticsResult monthlyPostFrequencyResult = monthlyPostFrequencyCollector.collect(user, posts);
-    StatisticsResult topWordsResult = topWordsCollector.collect(user, posts);
-
-    // Convert statistics objects to JSON response strings
-    String topFriendsJson = ((InfographicResult) topFriendsResult).getInfographicJson();
-    String postTypesJson = ((InfographicResult) postTypesResult).getInfographicJson();
-    String dailyPostFrequencyJson = ((InfographicResult) dailyPostFrequencyResult).getInfographicJson();
-    String monthlyPostFrequencyJson = ((InfographicResult) monthlyPostFrequencyResult).getInfographicJson();
-    String topWordsJson = ((InfographicResult) topWordsResult).getInfographicJson();
-
-    // Construct final response object containing all statistics data
-    String result = "";
     try {
-      JSONObject resultObject = new JSONObject();
-      resultObject.put("TOP_FRIENDS", new JSONObject(topFriendsJson));
-      resultObject.put("POST_TYPES", new JSONObject(postTypesJson));
-      resultObject.put("DAILY_POST_FREQUENCY", new JSONObject(dailyPostFrequencyJson));
-      resultObject.put("MONTHLY_POST_FREQUENCY", new JSONObject(monthlyPostFrequencyJson));
-      resultObject.put("TOP_WORDS", new JSONObject(topWordsJson));
-
-      result = resultObject.toString();
-    } catch (JSONException e) {
-      log.severe("[" + request.getSession().getId() + "] Error encountered while constructing response JSON: " +
-                 e.getMessage());
-      e.printStackTrace();
+      HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+      response.setStatus(status);
+      response.setContentType("application/json");
+      response.getWriter().println("{\"ERROR\":" + JSONObject.quote(message) + "}");
+    } finally {
+      asyncContext.complete();
     }
-
-    response.getWriter().println(result);
   }
 }
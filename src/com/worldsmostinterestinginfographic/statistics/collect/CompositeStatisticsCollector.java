@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.statistics.collect;
+
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
+import com.worldsmostinterestinginfographic.model.object.Post;
+import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.statistics.result.StatisticsResult;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A statistics collector that drives any number of other collectors from a single pass over the posts.
+ *
+ * Each batch of posts is laid out once and handed to every registered collector in turn, and whether each post was made
+ * by the user is worked out once per batch rather than once per collector.  Like the collectors it drives, this class
+ * is stateless; the states of all registered collectors are bundled into a single
+ * <code>CompositeStatisticsCollector.State</code>, which can be accumulated into page by page, merged and finished just
+ * as any one collector's state can.
+ *
+ * Collectors can also be run asynchronously, in parallel with one another, with <code>acceptAsync()</code> and
+ * <code>finishAsync()</code>.  A state must be driven either synchronously or asynchronously, never both.
+ */
+public class CompositeStatisticsCollector {
+
+  private final List<StatisticsCollector<Object, ?>> collectors;
+
+  @SuppressWarnings("unchecked")
+  public CompositeStatisticsCollector(StatisticsCollector<?, ?>... collectors) {
+    if (collectors == null || collectors.length == 0) {
+      throw new IllegalArgumentException();
+    }
+
+    List<StatisticsCollector<Object, ?>> list = new ArrayList<>(collectors.length);
+    for (StatisticsCollector<?, ?> collector : collectors) {
+      list.add((StatisticsCollector<Object, ?>) collector);
+    }
+    this.collectors = list;
+  }
+
+  /**
+   * Collects statistics of the given user given their feed posts, from every registered collector, in a single pass.
+   *
+   * @param user The user for whom to collect statistics for
+   * @param posts The posts to analyze to gather desired statistics
+   * @return The results of each registered collector, in the order the collectors were registered
+   */
+  public List<StatisticsResult> collect(User user, List<Post> posts) {
+    State state = createState(user);
+    accept(state, posts);
+
+    return finish(state);
+  }
+
+  /**
+   * Creates a new, empty state for every registered collector.
+   *
+   * @param user The user for whom to collect statistics for
+   * @return A new, empty composite state
+   */
+  public State createState(User user) {
+    Object[] states = new Object[collectors.size()];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = collectors.get(i).createState(user);
+    }
+
+    return new State(user, states);
+  }
+
+  /**
+   * Accepts the given posts into the state of every registered collector.
+   *
+   * @param state The composite state to accumulate into
+   * @param posts The posts to analyze
+   */
+  public void accept(State state, List<Post> posts) {
+    FeedBatch batch = FeedBatch.of(posts);
+    boolean[] ownPosts = batch.authoredBy(state.user.getId());
+    for (int i = 0; i < state.states.length; i++) {
+      collectors.get(i).accept(state.states[i], batch, ownPosts);
+    }
+  }
+
+  /**
+   * Accepts the given posts into the state of every registered collector, asynchronously.  Each collector's share of
+   * the work is submitted to the given executor as a separate task, so collectors run in parallel with one another;
+   * batches accepted into the same state are still applied to any one collector in the order they were submitted.
+   *
+   * The posts are laid out as a <code>FeedBatch</code> once, up front, and every collector scans that batch rather than
+   * the posts themselves, so the given list may be discarded (though not modified) as soon as this returns.  Calls for
+   * the same state must not be made concurrently.
+   *
+   * @param state The composite state to accumulate into
+   * @param posts The posts to analyze
+   * @param executor The executor on which to run the collectors
+   */
+  public void acceptAsync(State state, List<Post> posts, Executor executor) {
+    acceptAsync(state, FeedBatch.of(posts), executor);
+  }
+
+  /**
+   * Accepts the given batch of posts into the state of every registered collector, asynchronously, as
+   * <code>acceptAsync(State, List, Executor)</code> does.
+   *
+   * @param state The composite state to accumulate into
+   * @param batch The posts to analyze
+   * @param executor The executor on which to run the collectors
+   */
+  public void acceptAsync(State state, final FeedBatch batch, Executor executor) {
+    final boolean[] ownPosts = batch.authoredBy(state.user.getId());
+
+    final CompletableFuture<?>[] pending = state.getPending();
+    for (int i = 0; i < pending.length; i++) {
+      final StatisticsCollector<Object, ?> collector = collectors.get(i);
+      final Object collectorState = state.states[i];
+      pending[i] = pending[i].thenRunAsync(() -> {
+        if (state.cancelled) {
+          return;
+        }
+
+        collector.accept(collectorState, batch, ownPosts);
+      }, executor);
+    }
+  }
+
+  /**
+   * Finishes every registered collector, asynchronously, once all work previously submitted for the state with
+   * <code>acceptAsync()</code> has been done.  Each collector is finished as a separate task on the given executor.
+   *
+   * The returned future is completed on one of the executor's threads, so dependent actions (such as caching the
+   * results) run there too.  Executors whose dependents call App Engine APIs must therefore create their threads
+   * through <code>ThreadManager</code>, as the statistics executor of <code>RequestExecutors</code> does.
+   *
+   * @param state The composite state to finish
+   * @param executor The executor on which to finish the collectors
+   * @return A future for the results of each registered collector, in the order the collectors were registered
+   */
+  public CompletableFuture<List<StatisticsResult>> finishAsync(State state, Executor executor) {
+    final CompletableFuture<?>[] pending = state.getPending();
+    final List<CompletableFuture<? extends StatisticsResult>> results = new ArrayList<>(pending.length);
+    for (int i = 0; i < pending.length; i++) {
+      final StatisticsCollector<Object, ?> collector = collectors.get(i);
+      final Object collectorState = state.states[i];
+      results.add(pending[i].thenApplyAsync(ignored -> collector.finish(collectorState), executor));
+    }
+
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).thenApply(ignored -> {
+      List<StatisticsResult> finished = new ArrayList<>(results.size());
+      for (CompletableFuture<? extends StatisticsResult> result : results) {
+        finished.add(result.join());
+      }
+
+      return finished;
+    });
+  }
+
+  /**
+   * Abandons the given state: asynchronous work already submitted for it that has not yet started is skipped.
+   *
+   * @param state The composite state to abandon
+   */
+  public void cancel(State state) {
+    state.cancelled = true;
+  }
+
+  /**
+   * Merges two partial composite states for the same user into one.
+   *
+   * @param left A partial composite state
+   * @param right Another partial composite state
+   * @return The merged composite state
+   */
+  public State merge(State left, State right) {
+    Object[] states = new Object[collectors.size()];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = collectors.get(i).merge(left.states[i], right.states[i]);
+    }
+
+    return new State(left.user, states);
+  }
+
+  /**
+   * Finishes every registered collector.
+   *
+   * @param state The composite state to finish
+   * @return The results of each registered collector, in the order the collectors were registered
+   */
+  public List<StatisticsResult> finish(State state) {
+    List<StatisticsResult> results = new ArrayList<>(collectors.size());
+    for (int i = 0; i < state.states.length; i++) {
+      results.add(collectors.get(i).finish(state.states[i]));
+    }
+
+    return results;
+  }
+
+  /**
+   * The bundled states of every registered collector.
+   */
+  public static final class State implements Serializable {
+    private final User user;
+    private final Object[] states;
+
+    // The tail of each collector's chain of asynchronous work
+    private transient CompletableFuture<?>[] pending;
+    private transient volatile boolean cancelled;
+
+    private State(User user, Object[] states) {
+      this.user = user;
+      this.states = states;
+    }
+
+    private CompletableFuture<?>[] getPending() {
+      if (pending == null) {
+        pending = new CompletableFuture<?>[states.length];
+        for (int i = 0; i < pending.length; i++) {
+          pending[i] = CompletableFuture.completedFuture(null);
+        }
+      }
+
+      return pending;
+    }
+
+    @Override
+    public String toString() {
+      return "CompositeStatisticsCollector.State" + Arrays.toString(states);
+    }
+  }
+}
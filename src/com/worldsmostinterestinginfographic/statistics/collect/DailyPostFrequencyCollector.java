@@ -18,47 +18,76 @@
 
 package com.worldsmostinterestinginfographic.statistics.collect;
 
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
 import com.worldsmostinterestinginfographic.model.object.Post;
 import com.worldsmostinterestinginfographic.model.object.User;
 import com.worldsmostinterestinginfographic.statistics.result.DailyPostFrequencyResult;
+import com.worldsmostinterestinginfographic.util.DateTimeUtils;
+import com.worldsmostinterestinginfographic.util.ZoneOffsetTable;
 
-import java.util.Calendar;
-import java.util.List;
+import java.io.Serializable;
 
 /**
  * A statistics collector, this class will collect data regarding a given user's daily post frequency by analyzing their
- * feed data.  Their post frequency is represented as the number of posts posted per day of the week.
+ * feed data.  Their post frequency is represented as the number of posts posted per day of the week, in the user's
+ * own time zone (or UTC, if unknown).
  */
-public class DailyPostFrequencyCollector implements StatisticsCollector {
+public class DailyPostFrequencyCollector
+    implements StatisticsCollector<DailyPostFrequencyCollector.State, DailyPostFrequencyResult> {
 
-  private final int DAYS_PER_WEEK = 7;
+  private static final int DAYS_PER_WEEK = 7;
+
+  @Override
+  public State createState(User user) {
+    return new State(ZoneOffsetTable.forZone(user.getTimeZone()));
+  }
 
   /**
-   * This method will iterate through the given posts generating statistics about the given user's daily post frequency
-   * represented as the number of posts posted per day of the week.
+   * Counts the given posts towards the user's daily post frequency, represented as the number of posts posted per day
+   * of the week.
    *
-   * @param user The user for whom to collect statistics for
-   * @param posts The posts to analyze to gather desired statistics
+   * @param state The state to accumulate into
+   * @param batch The posts to analyze
+   * @param ownPosts Whether each post of the batch was made by the user for whom statistics are being collected
+   */
+  @Override
+  public void accept(State state, FeedBatch batch, boolean[] ownPosts) {
+    for (int i = 0; i < ownPosts.length; i++) {
+      long createdTime = batch.getCreatedTime(i);
+      if (ownPosts[i] && createdTime != Post.NO_CREATED_TIME) {
+        state.postsByDayOfWeek[DateTimeUtils.dayOfWeek(state.offsets.toLocal(createdTime))] += 1;
+      }
+    }
+  }
+
+  /**
+   * @param state The state to finish
    * @return A <code>com.worldsmostinterestinginfographic.statistics.result.DailyPostFrequencyResult</code> which
    * encapsulates the response to a request to collect statistics about a user's daily post frequency
    */
   @Override
-  public DailyPostFrequencyResult collect(User user, List<Post> posts) {
+  public DailyPostFrequencyResult finish(State state) {
+    return new DailyPostFrequencyResult(state.postsByDayOfWeek.clone());
+  }
 
-    // Populate daily post-frequency array
-    int[] postsByDayOfWeek = new int[DAYS_PER_WEEK];
-    for (Post post : posts) {
+  @Override
+  public State merge(State left, State right) {
+    for (int i = 0; i < DAYS_PER_WEEK; i++) {
+      left.postsByDayOfWeek[i] += right.postsByDayOfWeek[i];
+    }
 
-      // Only look at my posts
-      if (!post.getFrom().equals(user)) {
-        continue;
-      }
+    return left;
+  }
 
-      if (post.getCreatedDate() != null) {
-        postsByDayOfWeek[post.getCreatedDate().get(Calendar.DAY_OF_WEEK) - 1] += 1;
-      }
-    }
+  /**
+   * The running count of the user's posts per day of the week, in the user's time zone.
+   */
+  public static final class State implements Serializable {
+    private final ZoneOffsetTable offsets;
+    private final int[] postsByDayOfWeek = new int[DAYS_PER_WEEK];
 
-    return new DailyPostFrequencyResult(postsByDayOfWeek);
+    private State(ZoneOffsetTable offsets) {
+      this.offsets = offsets;
+    }
   }
 }
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.statistics.collect;
+
+import java.io.Serializable;
+
+/**
+ * A specialized table of counts keyed by primitive <code>long</code>s (e.g. Facebook user IDs).
+ *
+ * Keys and counts are kept in plain parallel arrays and collisions are resolved by linear probing, so counting a key
+ * involves no boxing and no pointer chasing.  Keys are hashed with a 64-bit mix, so keys differing only in their high
+ * bits do not collide.  A slot is empty while its count is zero, which leaves every <code>long</code> free to be used
+ * as a key.
+ *
+ * This class is not thread-safe.
+ */
+final class LongIntCountMap implements Serializable {
+
+  /**
+   * Receives the keys and counts of a <code>LongIntCountMap</code>.
+   */
+  interface Consumer {
+    void accept(long key, int count);
+  }
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * Counts one occurrence of the given key.
+   *
+   * @param key The key to count
+   * @return <code>true</code> if this is the first occurrence of the key
+   */
+  boolean increment(long key) {
+    return add(key, 1);
+  }
+
+  /**
+   * Adds the given (positive) count to the given key.
+   *
+   * @param key The key to count
+   * @param count The number of occurrences to add
+   * @return <code>true</code> if the key had not been counted before
+   */
+  boolean add(long key, int count) {
+    int slot = slotOf(key);
+    if (counts[slot] == 0) {
+      keys[slot] = key;
+      counts[slot] = count;
+
+      // Keep the table at most two thirds full
+      if (++size * 3 > keys.length * 2) {
+        resize();
+      }
+      return true;
+    }
+
+    counts[slot] += count;
+    return false;
+  }
+
+  /**
+   * Hands every key and its count to the given consumer, in no particular order.
+   *
+   * @param consumer The consumer of keys and their counts
+   */
+  void forEach(Consumer consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      if (counts[i] != 0) {
+        consumer.accept(keys[i], counts[i]);
+      }
+    }
+  }
+
+  /**
+   * @return The number of distinct keys counted
+   */
+  int size() {
+    return size;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    int[] oldCounts = counts;
+    keys = new long[oldKeys.length * 2];
+    counts = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldCounts[i] != 0) {
+        int slot = slotOf(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        counts[slot] = oldCounts[i];
+      }
+    }
+  }
+
+  /**
+   * Finds the slot holding the given key, or the empty slot where it belongs if it has not been counted.
+   */
+  private int slotOf(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (counts[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private static int hash(long key) {
+
+    // The finalizer of MurmurHash3's 64-bit hash, so that every bit of the key affects the slot
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+}
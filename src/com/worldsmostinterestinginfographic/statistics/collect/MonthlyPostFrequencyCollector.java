@@ -18,47 +18,76 @@
 
 package com.worldsmostinterestinginfographic.statistics.collect;
 
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
 import com.worldsmostinterestinginfographic.model.object.Post;
 import com.worldsmostinterestinginfographic.model.object.User;
 import com.worldsmostinterestinginfographic.statistics.result.MonthlyPostFrequencyResult;
+import com.worldsmostinterestinginfographic.util.DateTimeUtils;
+import com.worldsmostinterestinginfographic.util.ZoneOffsetTable;
 
-import java.util.Calendar;
-import java.util.List;
+import java.io.Serializable;
 
 /**
  * A statistics collector, this class will collect data regarding a given user's monthly post frequency by analyzing
- * their feed data.  Their post frequency is represented as the number of posts posted per month of the year.
+ * their feed data.  Their post frequency is represented as the number of posts posted per month of the year, in the
+ * user's own time zone (or UTC, if unknown).
  */
-public class MonthlyPostFrequencyCollector implements StatisticsCollector {
+public class MonthlyPostFrequencyCollector
+    implements StatisticsCollector<MonthlyPostFrequencyCollector.State, MonthlyPostFrequencyResult> {
 
-  private final int MONTHS_PER_YEAR = 12;
+  private static final int MONTHS_PER_YEAR = 12;
+
+  @Override
+  public State createState(User user) {
+    return new State(ZoneOffsetTable.forZone(user.getTimeZone()));
+  }
 
   /**
-   * This method will iterate through the given posts generating statistics about the given user's monthly post
-   * frequency represented as the number of posts posted per month of the year.
+   * Counts the given posts towards the user's monthly post frequency, represented as the number of posts posted per
+   * month of the year.
    *
-   * @param user The user for whom to collect statistics for
-   * @param posts The posts to analyze to gather desired statistics
+   * @param state The state to accumulate into
+   * @param batch The posts to analyze
+   * @param ownPosts Whether each post of the batch was made by the user for whom statistics are being collected
+   */
+  @Override
+  public void accept(State state, FeedBatch batch, boolean[] ownPosts) {
+    for (int i = 0; i < ownPosts.length; i++) {
+      long createdTime = batch.getCreatedTime(i);
+      if (ownPosts[i] && createdTime != Post.NO_CREATED_TIME) {
+        state.postsByMonthOfYear[DateTimeUtils.monthOfYear(state.offsets.toLocal(createdTime))] += 1;
+      }
+    }
+  }
+
+  /**
+   * @param state The state to finish
    * @return A <code>com.worldsmostinterestinginfographic.statistics.result.MonthlyPostFrequencyResult</code> which
    * encapsulates the response to a request to collect statistics about a user's monthly post frequency
    */
   @Override
-  public MonthlyPostFrequencyResult collect(User user, List<Post> posts) {
+  public MonthlyPostFrequencyResult finish(State state) {
+    return new MonthlyPostFrequencyResult(state.postsByMonthOfYear.clone());
+  }
 
-    // Populate monthly post-frequency array
-    int[] postsByMonthOfYear = new int[MONTHS_PER_YEAR];
-    for (Post post : posts) {
+  @Override
+  public State merge(State left, State right) {
+    for (int i = 0; i < MONTHS_PER_YEAR; i++) {
+      left.postsByMonthOfYear[i] += right.postsByMonthOfYear[i];
+    }
 
-      // Only look at my posts
-      if (!post.getFrom().equals(user)) {
-        continue;
-      }
+    return left;
+  }
 
-      if (post.getCreatedDate() != null) {
-        postsByMonthOfYear[post.getCreatedDate().get(Calendar.MONTH)] += 1;
-      }
-    }
+  /**
+   * The running count of the user's posts per month of the year, in the user's time zone.
+   */
+  public static final class State implements Serializable {
+    private final ZoneOffsetTable offsets;
+    private final int[] postsByMonthOfYear = new int[MONTHS_PER_YEAR];
 
-    return new MonthlyPostFrequencyResult(postsByMonthOfYear);
+    private State(ZoneOffsetTable offsets) {
+      this.offsets = offsets;
+    }
   }
 }
@@ -18,49 +18,64 @@
 
 package com.worldsmostinterestinginfographic.statistics.collect;
 
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
 import com.worldsmostinterestinginfographic.model.object.Post;
 import com.worldsmostinterestinginfographic.model.object.User;
 import com.worldsmostinterestinginfographic.statistics.result.PostTypesResult;
 
+import java.io.Serializable;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
  * A statistics collector, this class will collect data regarding a given user's preferred post type (e.g. status
  * update, shared link, photo, etc) by analyzing their feed data.
  */
-public class PostTypesCollector implements StatisticsCollector {
+public class PostTypesCollector implements StatisticsCollector<PostTypesCollector.State, PostTypesResult> {
+
+  @Override
+  public State createState(User user) {
+    return new State();
+  }
 
   /**
-   * This method will iterate through the given posts generating statistics about the given user's most commonly
-   * used post type (e.g. status update, shared link, photo, etc).
+   * Counts the given posts towards the user's most commonly used post type (e.g. status update, shared link, photo,
+   * etc).
    *
-   * @param user The user for whom to collect statistics for
-   * @param posts The posts to analyze to gather desired statistics
+   * @param state The state to accumulate into
+   * @param batch The posts to analyze
+   * @param ownPosts Whether each post of the batch was made by the user for whom statistics are being collected
+   */
+  @Override
+  public void accept(State state, FeedBatch batch, boolean[] ownPosts) {
+    for (int i = 0; i < ownPosts.length; i++) {
+      if (ownPosts[i]) {
+        state.postTypesCount.merge(batch.getType(i), 1, Integer::sum);
+      }
+    }
+  }
+
+  /**
+   * @param state The state to finish
    * @return A <code>com.worldsmostinterestinginfographic.statistics.result.PostTypesResult</code> which encapsulates
    * the response to a request to collect statistics about a user's preferred post types
    */
   @Override
-  public PostTypesResult collect(User user, List<Post> posts) {
-
-    // Populate post-types map
-    Map<Post.Type, Integer> postTypesCount = new HashMap<>();
-    for (Post post : posts) {
-
-      // Only look at my posts
-      if (!post.getFrom().equals(user)) {
-        continue;
-      }
+  public PostTypesResult finish(State state) {
+    return new PostTypesResult(new HashMap<>(state.postTypesCount));
+  }
 
-      if (!postTypesCount.containsKey(post.getType())) {
-        postTypesCount.put(post.getType(), 1);
-        continue;
-      }
+  @Override
+  public State merge(State left, State right) {
+    right.postTypesCount.forEach((type, count) -> left.postTypesCount.merge(type, count, Integer::sum));
 
-      postTypesCount.put(post.getType(), postTypesCount.get(post.getType()) + 1);
-    }
+    return left;
+  }
 
-    return new PostTypesResult(postTypesCount);
+  /**
+   * The running count of the user's posts per post type.
+   */
+  public static final class State implements Serializable {
+    private final Map<Post.Type, Integer> postTypesCount = new HashMap<>();
   }
 }
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.statistics.collect;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An approximate counter of the most frequent keys in a stream, using a fixed amount of memory (the Space-Saving
+ * algorithm of Metwally, Agrawal and El Abbadi).
+ *
+ * At most <code>capacity</code> keys are monitored at once.  Once that many are being monitored, a key not yet
+ * monitored takes the place of the monitored key with the lowest count, inheriting that count (plus one) as an
+ * overestimate.  Counts are therefore never underestimated, and are overestimated by at most
+ * <code>getMaxError()</code>, which never exceeds the number of occurrences counted divided by the capacity.  Any key
+ * occurring more often than that is guaranteed to be monitored.
+ *
+ * Monitored keys are kept in a min-heap on their counts, so each occurrence costs at most <code>O(log capacity)</code>.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <K> The type of key being counted
+ */
+final class SpaceSaving<K> implements Serializable {
+
+  private final int capacity;
+  private final Map<K, Counter<K>> counters;
+  private final Counter<K>[] heap;
+  private int size = 0;
+
+  @SuppressWarnings("unchecked")
+  SpaceSaving(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.capacity = capacity;
+    this.counters = new HashMap<>(capacity * 2);
+    this.heap = new Counter[capacity];
+  }
+
+  /**
+   * Counts one occurrence of the given key.
+   *
+   * @param key The key to count
+   */
+  void offer(K key) {
+    Counter<K> counter = counters.get(key);
+    if (counter != null) {
+      counter.count++;
+      siftDown(counter.index);
+      return;
+    }
+
+    if (size < capacity) {
+      counter = new Counter<>(key, 1, 0);
+      counter.index = size;
+      heap[size++] = counter;
+      counters.put(key, counter);
+      siftUp(counter.index);
+      return;
+    }
+
+    // Evict the key with the lowest count, its count becoming the newcomer's error
+    counter = heap[0];
+    counters.remove(counter.key);
+    counter.key = key;
+    counter.error = counter.count;
+    counter.count++;
+    counters.put(key, counter);
+    siftDown(0);
+  }
+
+  /**
+   * Merges this summary with another of the same capacity, as if every occurrence counted by either had been counted
+   * by one summary.  Neither summary is modified.
+   *
+   * @param other The summary to merge with
+   * @return A new, merged summary
+   */
+  SpaceSaving<K> merge(SpaceSaving<K> other) {
+
+    // A key not monitored by a summary may have occurred up to that summary's error bound times
+    int thisMissing = getMaxError();
+    int otherMissing = other.getMaxError();
+
+    List<Counter<K>> union = new ArrayList<>(size + other.size);
+    for (int i = 0; i < size; i++) {
+      Counter<K> counter = heap[i];
+      Counter<K> otherCounter = other.counters.get(counter.key);
+      union.add(otherCounter == null
+                ? new Counter<>(counter.key, counter.count + otherMissing, counter.error + otherMissing)
+                : new Counter<>(counter.key, counter.count + otherCounter.count, counter.error + otherCounter.error));
+    }
+    for (int i = 0; i < other.size; i++) {
+      Counter<K> otherCounter = other.heap[i];
+      if (!counters.containsKey(otherCounter.key)) {
+        union.add(new Counter<>(otherCounter.key, otherCounter.count + thisMissing, otherCounter.error + thisMissing));
+      }
+    }
+
+    // Keep the highest counts
+    union.sort((a, b) -> Integer.compare(b.count, a.count));
+    SpaceSaving<K> merged = new SpaceSaving<>(capacity);
+    for (int i = 0; i < union.size() && i < capacity; i++) {
+      Counter<K> counter = union.get(i);
+      counter.index = merged.size;
+      merged.heap[merged.size++] = counter;
+      merged.counters.put(counter.key, counter);
+      merged.siftUp(counter.index);
+    }
+
+    return merged;
+  }
+
+  /**
+   * Hands every monitored key and its (estimated) count to the given consumer, in no particular order.
+   *
+   * @param consumer The consumer of keys and their counts
+   */
+  void forEach(ObjIntConsumer<K> consumer) {
+    for (int i = 0; i < size; i++) {
+      consumer.accept(heap[i].key, heap[i].count);
+    }
+  }
+
+  /**
+   * @return The most by which any count may be overestimated; zero while fewer keys than the capacity have been seen
+   */
+  int getMaxError() {
+    return size < capacity ? 0 : heap[0].count;
+  }
+
+  private void siftUp(int index) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (heap[index].count >= heap[parent].count) {
+        return;
+      }
+
+      swap(index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int index) {
+    while (true) {
+      int lowest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && heap[left].count < heap[lowest].count) {
+        lowest = left;
+      }
+      if (right < size && heap[right].count < heap[lowest].count) {
+        lowest = right;
+      }
+      if (lowest == index) {
+        return;
+      }
+
+      swap(index, lowest);
+      index = lowest;
+    }
+  }
+
+  private void swap(int a, int b) {
+    Counter<K> counter = heap[a];
+    heap[a] = heap[b];
+    heap[b] = counter;
+    heap[a].index = a;
+    heap[b].index = b;
+  }
+
+  /**
+   * A monitored key, its estimated count, the most by which that count may be overestimated, and its place in the heap.
+   */
+  private static final class Counter<K> implements Serializable {
+    private K key;
+    private int count;
+    private int error;
+    private int index;
+
+    private Counter(K key, int count, int error) {
+      this.key = key;
+      this.count = count;
+      this.error = error;
+    }
+  }
+}
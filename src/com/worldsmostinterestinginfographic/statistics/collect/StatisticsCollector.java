@@ -18,6 +18,7 @@
 
 package com.worldsmostinterestinginfographic.statistics.collect;
 
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
 import com.worldsmostinterestinginfographic.model.object.Post;
 import com.worldsmostinterestinginfographic.model.object.User;
 import com.worldsmostinterestinginfographic.statistics.result.StatisticsResult;
@@ -26,8 +27,19 @@ import java.util.List;
 
 /**
  * Denotes a class as a collector of statistics and, as such, implements a <code>collect()</code> method.
+ *
+ * Collectors are accumulators: the collector itself is stateless, and all state for a given collection lives in a state
+ * object created by <code>createState()</code>.  Posts are added to a state a batch at a time with
+ * <code>accept()</code>, two partial states (e.g. from different pages of the feed, or from different threads) can be
+ * combined with <code>merge()</code>, and <code>finish()</code> turns a state into the final result.  States are
+ * serializable, so a partial aggregate can be stored and later updated with only new posts.
+ *
+ * A state may only be used by one thread at a time.  Collectors themselves are thread-safe.
+ *
+ * @param <S> The type of the collector's accumulation state
+ * @param <R> The type of result produced by the collector
  */
-public interface StatisticsCollector {
+public interface StatisticsCollector<S, R extends StatisticsResult> {
 
   /**
    * Collects statistics of the given user given their feed posts.
@@ -36,5 +48,49 @@ public interface StatisticsCollector {
    * @param posts The posts to analyze to gather desired statistics
    * @return A <code>StatisticsResult</code> object containing the result data
    */
-  public StatisticsResult collect(User user, List<Post> posts);
+  public default R collect(User user, List<Post> posts) {
+    S state = createState(user);
+    FeedBatch batch = FeedBatch.of(posts);
+    accept(state, batch, batch.authoredBy(user.getId()));
+
+    return finish(state);
+  }
+
+  /**
+   * Creates a new, empty accumulation state for the given user.
+   *
+   * @param user The user for whom to collect statistics for
+   * @return A new, empty state
+   */
+  public S createState(User user);
+
+  /**
+   * Accepts every post of the given batch into the given state, in order.  The batch is scanned one column at a time
+   * rather than one post object at a time.
+   *
+   * @param state The state to accumulate into
+   * @param batch The posts to analyze
+   * @param ownPosts Whether each post of the batch was made by the user for whom statistics are being collected
+   */
+  public void accept(S state, FeedBatch batch, boolean[] ownPosts);
+
+  /**
+   * Merges two partial states for the same user into one.  The result is as if every post accepted into either state
+   * had been accepted into a single state.  Either argument may be modified and returned as the result; neither should
+   * be used afterwards.
+   *
+   * @param left A partial state
+   * @param right Another partial state
+   * @return The merged state
+   */
+  public S merge(S left, S right);
+
+  /**
+   * Finishes a collection, turning its state into the result.  The state is left untouched, so it may continue to be
+   * accumulated into afterwards.
+   *
+   * @param state The state to finish
+   * @return A <code>StatisticsResult</code> object containing the result data
+   */
+  public R finish(S state);
 }
@@ -18,14 +18,14 @@
 
 package com.worldsmostinterestinginfographic.statistics.collect;
 
-import com.worldsmostinterestinginfographic.model.object.Post;
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
 import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.model.object.UserPool;
 import com.worldsmostinterestinginfographic.statistics.result.TopFriendsResult;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -36,56 +36,158 @@ import java.util.Map;
  * the user's friends where the front of the list (i.e. index 0) is the user's top friend (i.e. the friend who has liked
  * his posts the most).  The 2nd position in the list represents the user's 2nd best friend, the 3rd for the 3rd, and so
  * on.
+ *
+ * Every friend's likes are counted exactly by default.  Optionally, likes may instead be counted approximately in
+ * bounded memory (see <code>SpaceSaving</code>), in which case the result reports the most by which any count may be
+ * overestimated.
  */
-public class TopFriendsCollector implements StatisticsCollector {
+public class TopFriendsCollector implements StatisticsCollector<TopFriendsCollector.State, TopFriendsResult> {
+
+  private final int approximateCapacity;
+
+  public TopFriendsCollector() {
+    this(0);
+  }
+
+  /**
+   * @param approximateCapacity The number of distinct friends to keep count of when counting approximately, or zero to
+   *                            count every friend exactly
+   */
+  public TopFriendsCollector(int approximateCapacity) {
+    if (approximateCapacity < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.approximateCapacity = approximateCapacity;
+  }
+
+  @Override
+  public State createState(User user) {
+    return new State(user, approximateCapacity);
+  }
 
   /**
-   * This method will iterate through the given posts generating statistics about the given user's top friends.
+   * Counts the likes on the given posts towards the user's top friends.  Likes on all posts in the user's feed are
+   * counted, not just those on the user's own posts.
+   *
+   * @param state The state to accumulate into
+   * @param batch The posts to analyze
+   * @param ownPosts Whether each post of the batch was made by the user for whom statistics are being collected
+   */
+  @Override
+  public void accept(State state, FeedBatch batch, boolean[] ownPosts) {
+
+    // Likes on every post are counted, so the likers of the whole batch can be scanned in one go
+    long userId = state.user.getId();
+    for (int i = 0, likeCount = batch.getLikeCount(); i < likeCount; i++) {
+      long likerId = batch.getLikerId(i);
+
+      // Ignore own likes
+      if (likerId == userId) {
+        continue;
+      }
+
+      // Only IDs are counted; the few friends selected in the end are named by finish()
+      if (state.approximateFriendsLikes != null) {
+        state.approximateFriendsLikes.offer(likerId);
+      } else {
+        state.friendsLikes.increment(likerId);
+      }
+    }
+
+    state.addUsers(batch.getUsers());
+  }
+
+  /**
+   * Generates the statistics about the given user's top friends.
    *
    * The user's top friends are based on the number of likes each friend has contributed to the user's feed.  This is
    * returned to the client in the form of an ordered list of map entries where each map entry contains a user profile
    * as the key and their contributed likes as the value.  The map is ordered by descending number of likes.  So, the
    * first entry in the list represents the friend with the most number of likes to the user's profile, second entry is
-   * the friend with the second number of likes, and so on.
+   * the friend with the second number of likes, and so on.  Only the top
+   * <code>TopFriendsResult.NUMBER_OF_TOP_FRIENDS</code> friends are selected, without sorting all of them, and only
+   * they are looked up by ID in the pools the likers were read through.
    *
-   * @param user  The profile of the user who owns the posts
-   * @param posts The posts from the wall of the user
+   * @param state The state to finish
    * @return A <code>com.worldsmostinterestinginfographic.statistics.result.TopFriendsResult</code> which encapsulates
    * the response to a request to collect statistics about a user's top friends
    */
   @Override
-  public TopFriendsResult collect(User user, List<Post> posts) {
+  public TopFriendsResult finish(State state) {
+    // Select the friends with the most likes, ordered by like count (i.e. index 0 has friend with most likes)
+    final TopK<Long> topFriendIds = new TopK<>(TopFriendsResult.NUMBER_OF_TOP_FRIENDS);
+    if (state.approximateFriendsLikes != null) {
+      state.approximateFriendsLikes.forEach(topFriendIds::offer);
+    } else {
+      state.friendsLikes.forEach((friendId, likes) -> topFriendIds.offer(friendId, likes));
+    }
 
-    // Populate friends-likes map
-    Map<User, Integer> friendsLikesMap = new HashMap<User, Integer>();
-    for (Post post : posts) {
-      for (User liker : post.getLikes()) {
+    // Only now resolve the selected few back to their profiles
+    List<Map.Entry<User, Integer>> topFriends = new ArrayList<>(TopFriendsResult.NUMBER_OF_TOP_FRIENDS);
+    for (Map.Entry<Long, Integer> friendLikes : topFriendIds.toList()) {
+      topFriends.add(new AbstractMap.SimpleImmutableEntry<>(state.getUser(friendLikes.getKey()),
+                                                            friendLikes.getValue()));
+    }
 
-        // Ignore own likes
-        if (liker.equals(user)) {
-          continue;
-        }
+    if (state.approximateFriendsLikes != null) {
+      return new TopFriendsResult(topFriends, state.approximateFriendsLikes.getMaxError());
+    }
 
-        if (!friendsLikesMap.containsKey(liker)) {
-          friendsLikesMap.put(liker, 1);
-          continue;
-        }
+    return new TopFriendsResult(topFriends);
+  }
+
+  @Override
+  public State merge(State left, State right) {
+    for (UserPool users : right.users) {
+      left.addUsers(users);
+    }
+
+    if (left.approximateFriendsLikes != null) {
+      left.approximateFriendsLikes = left.approximateFriendsLikes.merge(right.approximateFriendsLikes);
+      return left;
+    }
 
-        friendsLikesMap.put(liker, friendsLikesMap.get(liker) + 1);
+    right.friendsLikes.forEach((friendId, likes) -> left.friendsLikes.add(friendId, likes));
+
+    return left;
+  }
+
+  /**
+   * The running count of likes per friend ID, kept either exactly or approximately, along with the pools the likers
+   * were read through (normally just the one of the feed being read), in which the top friends are named.
+   */
+  public static final class State implements Serializable {
+    private final User user;
+    private final LongIntCountMap friendsLikes;
+    private SpaceSaving<Long> approximateFriendsLikes;
+    private final List<UserPool> users = new ArrayList<>(1);
+
+    private State(User user, int approximateCapacity) {
+      this.user = user;
+      this.friendsLikes = approximateCapacity > 0 ? null : new LongIntCountMap();
+      this.approximateFriendsLikes = approximateCapacity > 0 ? new SpaceSaving<Long>(approximateCapacity) : null;
+    }
+
+    private void addUsers(UserPool pool) {
+      for (UserPool known : users) {
+        if (known == pool) {
+          return;
+        }
       }
+
+      users.add(pool);
     }
 
-    // Convert friends-likes map from map to sorted list ordered by like count (i.e. index 0 has friend with most likes)
-    List<Map.Entry<User, Integer>>
-        topFriendsList =
-        new LinkedList<Map.Entry<User, Integer>>(friendsLikesMap.entrySet());
-    Collections.sort(topFriendsList, new Comparator<Map.Entry<User, Integer>>() {
-      public int compare(Map.Entry<User, Integer> o1,
-                         Map.Entry<User, Integer> o2) {
-        return (o2.getValue()).compareTo(o1.getValue());
+    private User getUser(long id) {
+      for (UserPool pool : users) {
+        User user = pool.get(id);
+        if (user != null) {
+          return user;
+        }
       }
-    });
 
-    return new TopFriendsResult(topFriendsList);
+      return new User(id, null);
+    }
   }
 }
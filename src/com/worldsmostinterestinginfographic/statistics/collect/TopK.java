@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.statistics.collect;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects the <code>k</code> keys with the highest counts out of any number offered, without sorting them all.
+ *
+ * The best <code>k</code> keys seen so far are kept in a bounded heap whose root is the worst of them, so each key
+ * offered costs at most <code>O(log k)</code> and only <code>k</code> keys are ever held.  The selection is stable:
+ * among keys with equal counts, those offered first rank first, exactly as if all keys had been put in a list in the
+ * order offered and sorted by descending count with <code>Collections.sort()</code>.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <K> The type of key being counted
+ */
+final class TopK<K> {
+
+  private final Object[] keys;
+  private final int[] counts;
+  private final long[] sequence;
+  private int size = 0;
+  private long offered = 0;
+
+  TopK(int k) {
+    if (k <= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    keys = new Object[k];
+    counts = new int[k];
+    sequence = new long[k];
+  }
+
+  /**
+   * Offers a key and its count for selection.
+   *
+   * @param key The key
+   * @param count The key's count
+   */
+  void offer(K key, int count) {
+    long order = offered++;
+    if (size < keys.length) {
+      set(size, key, count, order);
+      siftUp(size++);
+      return;
+    }
+
+    // Having been offered later, the key must strictly beat the worst selected so far to displace it
+    if (count > counts[0]) {
+      set(0, key, count, order);
+      siftDown(0);
+    }
+  }
+
+  /**
+   * @return The selected keys and their counts, ordered by descending count (ties in the order they were offered)
+   */
+  @SuppressWarnings("unchecked")
+  List<Map.Entry<K, Integer>> toList() {
+    Integer[] ranked = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      ranked[i] = i;
+    }
+    Arrays.sort(ranked, (a, b) -> isWorse(a, b) ? 1 : (isWorse(b, a) ? -1 : 0));
+
+    List<Map.Entry<K, Integer>> list = new ArrayList<>(size);
+    for (int i : ranked) {
+      list.add(new AbstractMap.SimpleImmutableEntry<>((K) keys[i], counts[i]));
+    }
+
+    return list;
+  }
+
+  /**
+   * Whether the entry at the first index ranks below the entry at the second.
+   */
+  private boolean isWorse(int a, int b) {
+    return counts[a] < counts[b] || (counts[a] == counts[b] && sequence[a] > sequence[b]);
+  }
+
+  private void siftUp(int index) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (!isWorse(index, parent)) {
+        return;
+      }
+
+      swap(index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int index) {
+    while (true) {
+      int worst = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && isWorse(left, worst)) {
+        worst = left;
+      }
+      if (right < size && isWorse(right, worst)) {
+        worst = right;
+      }
+      if (worst == index) {
+        return;
+      }
+
+      swap(index, worst);
+      index = worst;
+    }
+  }
+
+  private void set(int index, Object key, int count, long order) {
+    keys[index] = key;
+    counts[index] = count;
+    sequence[index] = order;
+  }
+
+  private void swap(int a, int b) {
+    Object key = keys[a];
+    int count = counts[a];
+    long order = sequence[a];
+    set(a, keys[b], counts[b], sequence[b]);
+    set(b, key, count, order);
+  }
+}
@@ -18,87 +18,128 @@
 
 package com.worldsmostinterestinginfographic.statistics.collect;
 
-import com.worldsmostinterestinginfographic.model.object.Post;
+import com.worldsmostinterestinginfographic.model.object.FeedBatch;
 import com.worldsmostinterestinginfographic.model.object.User;
 import com.worldsmostinterestinginfographic.statistics.result.TopWordsResult;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Serializable;
 
 /**
  * A statistics collector, this class will collect data regarding a given user's most used words.  This collector will
  * analyze the user's feed posts counting each word as it appears.  The result of the collection will return an ordered
  * list of entries where the key is the word and the value is the count of occurrences of that word among the user's
  * posts.
+ *
+ * Every distinct word is counted exactly by default.  Optionally, words may instead be counted approximately in bounded
+ * memory (see <code>SpaceSaving</code>), in which case the result reports the most by which any count may be
+ * overestimated.
  */
-public class TopWordsCollector implements StatisticsCollector {
+public class TopWordsCollector implements StatisticsCollector<TopWordsCollector.State, TopWordsResult> {
 
   private static final int MIN_WORD_LENGTH = 4;
-  private static final String WORD_FINDER_REGEX = "\\b[A-Za-z]+\\b";
+
+  private final int approximateCapacity;
+
+  public TopWordsCollector() {
+    this(0);
+  }
+
+  /**
+   * @param approximateCapacity The number of distinct words to keep count of when counting approximately, or zero to
+   *                            count every word exactly
+   */
+  public TopWordsCollector(int approximateCapacity) {
+    if (approximateCapacity < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.approximateCapacity = approximateCapacity;
+  }
+
+  @Override
+  public State createState(User user) {
+    return new State(approximateCapacity);
+  }
 
   /**
-   * This method will iterate through the given posts generating statistics about the given user's most frequently used
-   * words.
+   * Counts the words of the given posts towards the user's most frequently used words.
    *
-   * The user's most frequently used words are counted based on their number of occurrences in the user's posts.  Words
-   * are recognized as alphabetic strings with a length greater than 3.Only posts made by the user will be counted.
-   * Posts made by other users that appear in their feed will not be included.  This collect method will return an
-   * ordered list of entries where the key is the word and the value is the count of occurrences of that word among the
-   * user's posts.
+   * Words are recognized as alphabetic strings with a length greater than 3, and are counted regardless of case.  Only
+   * posts made by the user will be counted.  Posts made by other users that appear in their feed will not be included.
    *
-   * @param user The user for whom to collect statistics for
-   * @param posts The posts to analyze to gather desired statistics
-   * @return A <code>com.worldsmostinterestinginfographic.statistics.result.TopWordsResult</code> which encapsulates
-   * the response to a request to collect statistics about a user's most frequently used words
+   * @param state The state to accumulate into
+   * @param batch The posts to analyze
+   * @param ownPosts Whether each post of the batch was made by the user for whom statistics are being collected
    */
   @Override
-  public TopWordsResult collect(User user, List<Post> posts) {
+  public void accept(State state, FeedBatch batch, boolean[] ownPosts) {
 
-    // Populate word-count map
-    Map<String, Integer> wordsCountMap = new HashMap<String, Integer>();
-    for (Post post : posts) {
-
-      // Only look at your own posts
-      if (!post.getFrom().equals(user)) {
+    // All messages of the batch share one buffer, so a single tokenizer scans each message's slice of it in place
+    CharSequence messages = batch.getMessages();
+    WordTokenizer tokenizer = new WordTokenizer(MIN_WORD_LENGTH);
+    for (int i = 0; i < ownPosts.length; i++) {
+      if (!ownPosts[i]) {
         continue;
       }
 
-      Pattern pattern = Pattern.compile(WORD_FINDER_REGEX, Pattern.CASE_INSENSITIVE);
-      Matcher matcher = pattern.matcher(post.getMessage());
-
-      while (matcher.find()) {
+      tokenizer.reset(messages, batch.getMessageStart(i), batch.getMessageEnd(i));
+      while (tokenizer.next()) {
+        if (state.approximateWordCounts != null) {
+          state.approximateWordCounts.offer(WordCountTable.fold(messages, tokenizer.start(), tokenizer.end()));
+        } else {
+          state.wordCounts.increment(messages, tokenizer.start(), tokenizer.end());
+        }
+      }
+    }
+  }
 
-        String word = matcher.group();
+  /**
+   * Generates the statistics about the given user's most frequently used words.
+   *
+   * The user's most frequently used words are counted based on their number of occurrences in the user's posts.  This
+   * returns an ordered list of entries where the key is the word and the value is the count of occurrences of that word
+   * among the user's posts.  Only the top <code>TopWordsResult.NUMBER_OF_TOP_WORDS</code> words are selected, without
+   * sorting all of them.
+   *
+   * @param state The state to finish
+   * @return A <code>com.worldsmostinterestinginfographic.statistics.result.TopWordsResult</code> which encapsulates
+   * the response to a request to collect statistics about a user's most frequently used words
+   */
+  @Override
+  public TopWordsResult finish(State state) {
 
-        // Only accept words greater than a certain minimum length
-        if (word.length() < MIN_WORD_LENGTH) {
-          continue;
-        }
+    // Select the most used words, ordered by occurrence count (i.e. index 0 has word with most occurrences)
+    TopK<String> topWords = new TopK<>(TopWordsResult.NUMBER_OF_TOP_WORDS);
+    if (state.approximateWordCounts != null) {
+      state.approximateWordCounts.forEach(topWords::offer);
+      return new TopWordsResult(topWords.toList(), state.approximateWordCounts.getMaxError());
+    }
 
-        if (!wordsCountMap.containsKey(word)) {
-          wordsCountMap.put(word, 1);
-          continue;
-        }
+    state.wordCounts.forEach(topWords::offer);
+    return new TopWordsResult(topWords.toList());
+  }
 
-        wordsCountMap.put(word, wordsCountMap.get(word) + 1);
-      }
+  @Override
+  public State merge(State left, State right) {
+    if (left.approximateWordCounts != null) {
+      left.approximateWordCounts = left.approximateWordCounts.merge(right.approximateWordCounts);
+    } else {
+      left.wordCounts.addAll(right.wordCounts);
     }
 
-    // Convert word-count map from map to sorted list ordered by occurrence count (i.e. index 0 has word with most occurrences)
-    List<Map.Entry<String, Integer>>  topWordsList = new LinkedList<Map.Entry<String, Integer>>(wordsCountMap.entrySet());
-    Collections.sort(topWordsList, new Comparator<Map.Entry<String,Integer>>() {
-      public int compare(Map.Entry<String, Integer> o1,
-                         Map.Entry<String, Integer> o2) {
-        return (o2.getValue()).compareTo(o1.getValue());
-      }
-    });
+    return left;
+  }
 
-    return new TopWordsResult(topWordsList);
+  /**
+   * The running count of occurrences per (case folded) word, kept either exactly or approximately.
+   */
+  public static final class State implements Serializable {
+    private final WordCountTable wordCounts;
+    private SpaceSaving<String> approximateWordCounts;
+
+    private State(int approximateCapacity) {
+      this.wordCounts = approximateCapacity > 0 ? null : new WordCountTable();
+      this.approximateWordCounts = approximateCapacity > 0 ? new SpaceSaving<String>(approximateCapacity) : null;
+    }
   }
 }
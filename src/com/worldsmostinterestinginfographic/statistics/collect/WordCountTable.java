@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.statistics.collect;
+
+import java.io.Serializable;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A specialized table of word counts, keyed by ASCII words with case folded.
+ *
+ * Words are looked up directly over a range of characters in the text they appear in, so counting an occurrence of a
+ * word that has already been seen allocates nothing; a (lower case) <code>String</code> is only created the first time
+ * a word is seen.  "Hello" and "hello" share one entry.  Counts are kept in a plain <code>int[]</code> alongside the
+ * keys, and collisions are resolved by linear probing.
+ *
+ * Only words made up solely of the ASCII letters <code>A-Z</code> and <code>a-z</code> may be counted, as produced by
+ * <code>WordTokenizer</code>.
+ *
+ * This class is not thread-safe.
+ */
+final class WordCountTable implements Serializable {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // Case is folded by setting the bit distinguishing upper from lower case ASCII letters
+  private static final int LOWER_CASE_BIT = 0x20;
+
+  private String[] keys = new String[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * Counts one occurrence of the word between the given indices of the given text.
+   *
+   * @param text The text the word appears in
+   * @param start The index of the first character of the word
+   * @param end The index after the last character of the word
+   */
+  void increment(CharSequence text, int start, int end) {
+    int slot = slotOf(text, start, end, hash(text, start, end));
+    if (keys[slot] == null) {
+      insert(slot, fold(text, start, end), 1);
+      return;
+    }
+
+    counts[slot]++;
+  }
+
+  /**
+   * Adds the given count to the given (already case folded) word.
+   *
+   * @param word The word to count
+   * @param count The number of occurrences to add
+   */
+  void add(String word, int count) {
+    int slot = slotOf(word, 0, word.length(), hash(word, 0, word.length()));
+    if (keys[slot] == null) {
+      insert(slot, word, count);
+      return;
+    }
+
+    counts[slot] += count;
+  }
+
+  /**
+   * Adds all counts from the given table to this one.
+   *
+   * @param other The table to add
+   */
+  void addAll(WordCountTable other) {
+    other.forEach(this::add);
+  }
+
+  /**
+   * Hands every word and its count to the given consumer, in no particular order.
+   *
+   * @param consumer The consumer of words and their counts
+   */
+  void forEach(ObjIntConsumer<String> consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        consumer.accept(keys[i], counts[i]);
+      }
+    }
+  }
+
+  /**
+   * @return The number of distinct words counted
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Creates the case folded form of the word between the given indices of the given text, as counted by this table.
+   *
+   * @param text The text the word appears in
+   * @param start The index of the first character of the word
+   * @param end The index after the last character of the word
+   * @return The case folded word
+   */
+  static String fold(CharSequence text, int start, int end) {
+    char[] word = new char[end - start];
+    for (int i = 0; i < word.length; i++) {
+      word[i] = (char) (text.charAt(start + i) | LOWER_CASE_BIT);
+    }
+
+    return new String(word);
+  }
+
+  private void insert(int slot, String word, int count) {
+    keys[slot] = word;
+    counts[slot] = count;
+
+    // Keep the table at most two thirds full
+    if (++size * 3 > keys.length * 2) {
+      resize();
+    }
+  }
+
+  private void resize() {
+    String[] oldKeys = keys;
+    int[] oldCounts = counts;
+    keys = new String[oldKeys.length * 2];
+    counts = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      String key = oldKeys[i];
+      if (key != null) {
+        int slot = slotOf(key, 0, key.length(), hash(key, 0, key.length()));
+        keys[slot] = key;
+        counts[slot] = oldCounts[i];
+      }
+    }
+  }
+
+  /**
+   * Finds the slot holding the given word, or the empty slot where it belongs if it has not been seen.
+   */
+  private int slotOf(CharSequence text, int start, int end, int hash) {
+    int mask = keys.length - 1;
+    int slot = hash & mask;
+    while (keys[slot] != null && !matches(keys[slot], text, start, end)) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private static boolean matches(String key, CharSequence text, int start, int end) {
+    if (key.length() != end - start) {
+      return false;
+    }
+
+    for (int i = 0; i < key.length(); i++) {
+      if (key.charAt(i) != (text.charAt(start + i) | LOWER_CASE_BIT)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + (text.charAt(i) | LOWER_CASE_BIT);
+    }
+
+    // Spread the higher bits downwards, as only the lower bits pick the slot
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
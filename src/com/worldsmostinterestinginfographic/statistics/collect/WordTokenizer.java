@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.statistics.collect;
+
+/**
+ * A hand-written word tokenizer, scanning a piece of text for words one character at a time.
+ *
+ * A word is a run of word characters (letters, digits, underscores, and combining marks following a letter or digit)
+ * made up solely of the ASCII letters <code>A-Z</code> and <code>a-z</code>, i.e. exactly what the regular expression
+ * <code>\b[A-Za-z]+\b</code> would find.  Runs that contain any other word character, and runs shorter than the
+ * minimum word length, are skipped without allocating anything.  Only the bounds of the current word are exposed, so
+ * that no <code>String</code> need be created for a word at all (see <code>WordCountTable</code>).
+ *
+ * This class is not thread-safe.
+ */
+final class WordTokenizer {
+
+  private final int minWordLength;
+
+  private CharSequence text;
+  private int limit;
+  private int position;
+  private int start;
+  private int end;
+
+  // Whether the last character scanned, other than a combining mark, was a letter or digit
+  private boolean afterLetterOrDigit;
+
+  WordTokenizer(int minWordLength) {
+    this.minWordLength = minWordLength;
+  }
+
+  /**
+   * Starts tokenizing the given text from its beginning.
+   *
+   * @param text The text to tokenize
+   */
+  void reset(CharSequence text) {
+    reset(text, 0, text.length());
+  }
+
+  /**
+   * Starts tokenizing the given range of the given text, as though that range were the whole text.  Word bounds are
+   * still given as indices into the whole text.
+   *
+   * @param text The text to tokenize
+   * @param from The index of the first character of the range
+   * @param to The index after the last character of the range
+   */
+  void reset(CharSequence text, int from, int to) {
+    this.text = text;
+    this.limit = to;
+    this.position = from;
+    this.start = from;
+    this.end = from;
+    this.afterLetterOrDigit = false;
+  }
+
+  /**
+   * Advances to the next word at least the minimum word length long.
+   *
+   * @return <code>true</code> if a word was found, or <code>false</code> if the end of the text has been reached
+   */
+  boolean next() {
+    while (position < limit) {
+
+      // Skip to the start of the next run of word characters
+      int codePoint = codePointAt(position);
+      if (!isWordCharacter(codePoint)) {
+        position += Character.charCount(codePoint);
+        continue;
+      }
+
+      // Scan to the end of the run, noting whether it is made up solely of ASCII letters
+      int runStart = position;
+      boolean letters = true;
+      while (position < limit) {
+        codePoint = codePointAt(position);
+        if (!isWordCharacter(codePoint)) {
+          break;
+        }
+
+        letters &= isAsciiLetter(codePoint);
+        position += Character.charCount(codePoint);
+      }
+
+      if (letters && position - runStart >= minWordLength) {
+        start = runStart;
+        end = position;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @return The index of the first character of the current word
+   */
+  int start() {
+    return start;
+  }
+
+  /**
+   * @return The index after the last character of the current word
+   */
+  int end() {
+    return end;
+  }
+
+  /**
+   * Determines whether the given character, the next to be scanned, is a word character.  Calling this again for the
+   * same character gives the same answer.
+   */
+  private boolean isWordCharacter(int codePoint) {
+    if (isAsciiLetter(codePoint)) {
+      afterLetterOrDigit = true;
+      return true;
+    }
+
+    // A combining mark takes on the character it is combined with
+    if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+      return afterLetterOrDigit;
+    }
+
+    // As with java.util.regex, only a letter or digit outside the supplementary planes takes a combining mark
+    boolean letterOrDigit = Character.isLetterOrDigit(codePoint);
+    afterLetterOrDigit = letterOrDigit && Character.isBmpCodePoint(codePoint);
+    return letterOrDigit || codePoint == '_';
+  }
+
+  /**
+   * Reads the character at the given index, as <code>Character.codePointAt()</code> does but never reading past the end
+   * of the range being tokenized.
+   */
+  private int codePointAt(int index) {
+    char high = text.charAt(index);
+    if (Character.isHighSurrogate(high) && index + 1 < limit) {
+      char low = text.charAt(index + 1);
+      if (Character.isLowSurrogate(low)) {
+        return Character.toCodePoint(high, low);
+      }
+    }
+
+    return high;
+  }
+
+  private static boolean isAsciiLetter(int codePoint) {
+    return (codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z');
+  }
+}
@@ -18,7 +18,9 @@
 
 package com.worldsmostinterestinginfographic.statistics.result;
 
-import com.whoischarles.util.json.Minify;
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
+
+import java.io.IOException;
 
 /**
  * This class encapsulates the response from the collection of a user's daily post frequency via the
@@ -30,6 +32,9 @@ import com.whoischarles.util.json.Minify;
  */
 public class DailyPostFrequencyResult implements StatisticsResult, InfographicResult {
 
+  // Days of the week in the order the infographic shows them, starting from Monday
+  private static final String[] DAYS_OF_WEEK = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun" };
+
   private int[] postsByDayOfWeek;
   private String error;
 
@@ -52,7 +57,7 @@ public class DailyPostFrequencyResult implements StatisticsResult, InfographicRe
   }
 
   /**
-   * Returns the result data in JSON format for the client to use in the rendering of the infographic.
+   * Writes the result data in JSON format for the client to use in the rendering of the infographic.
    *
    * Returns the daily post frequency of the user.  This is represented as an array of 7 integers, where the value is
    * the number of posts made for that day of the week, with index 0 being Sunday, index 1 being Monday, etc.  This will
@@ -94,43 +99,18 @@ public class DailyPostFrequencyResult implements StatisticsResult, InfographicRe
    *
    * This data will be used by the "Daily Post Frequency" infographic to populate and render.
    *
-   * @return A JSON representation of the user's daily post frequency data
+   * @param writer The writer to write the user's daily post frequency data to
+   * @throws IOException If the underlying writer fails
    */
   @Override
-  public String getInfographicJson() {
-    String json = "{" +
-                  "  \"frequency\": [" +
-                  "    {" +
-                  "      \"dayofweek\": \"Mon\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[1] +
-                  "    }," +
-                  "    {" +
-                  "      \"dayofweek\": \"Tue\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[2] +
-                  "    }," +
-                  "    {" +
-                  "      \"dayofweek\": \"Wed\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[3] +
-                  "    }," +
-                  "    {" +
-                  "      \"dayofweek\": \"Thu\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[4] +
-                  "    }," +
-                  "    {" +
-                  "      \"dayofweek\": \"Fri\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[5] +
-                  "    }," +
-                  "    {" +
-                  "      \"dayofweek\": \"Sat\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[6] +
-                  "    }," +
-                  "    {" +
-                  "      \"dayofweek\": \"Sun\"" + "," +
-                  "      \"count\": " + postsByDayOfWeek[0] +
-                  "    }" +
-                  "  ]" +
-                  "}";
-
-    return new Minify().minify(json);
+  public void writeInfographicJson(JsonStreamWriter writer) throws IOException {
+    writer.beginObject().name("frequency").beginArray();
+    for (int i = 0; i < DAYS_OF_WEEK.length; i++) {
+      writer.beginObject()
+          .name("dayofweek").value(DAYS_OF_WEEK[i])
+          .name("count").value(postsByDayOfWeek[(i + 1) % DAYS_OF_WEEK.length])
+          .endObject();
+    }
+    writer.endArray().endObject();
   }
 }
@@ -18,16 +18,42 @@
 
 package com.worldsmostinterestinginfographic.statistics.result;
 
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
 /**
  * Denotes a response object to be a provider for an infographic and, as such, the ability to provide result data in
  * JSON format for use in an appropriate infographic on the client.
  */
 public interface InfographicResult {
 
+  /**
+   * Writes the result data in JSON format, for the client to use in the rendering of the infographic, as the next value
+   * of the given writer.
+   *
+   * @param writer The writer to write the result data to
+   * @throws IOException If the underlying writer fails
+   */
+  public void writeInfographicJson(JsonStreamWriter writer) throws IOException;
+
   /**
    * Returns the result data in JSON format for the client to use in the rendering of the infographic.
    *
    * @return A JSON representation of the result data
    */
-  public String getInfographicJson();
+  public default String getInfographicJson() {
+    StringWriter json = new StringWriter();
+    try {
+      writeInfographicJson(new JsonStreamWriter(json));
+    } catch (IOException e) {
+
+      // A StringWriter never fails
+      throw new UncheckedIOException(e);
+    }
+
+    return json.toString();
+  }
 }
@@ -18,7 +18,9 @@
 
 package com.worldsmostinterestinginfographic.statistics.result;
 
-import com.whoischarles.util.json.Minify;
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
+
+import java.io.IOException;
 
 /**
  * This class encapsulates the response from the collection of a user's monthly post frequency via the
@@ -30,6 +32,9 @@ import com.whoischarles.util.json.Minify;
  */
 public class MonthlyPostFrequencyResult implements StatisticsResult, InfographicResult {
 
+  // Horizontal position of each month of the year on the infographic
+  private static final int[] MONTH_POSITIONS = { 0, 11, 22, 33, 44, 55, 66, 77, 88, 99, 110, 120 };
+
   private int[] postsByMonthOfYear;
   private String error;
 
@@ -56,7 +61,7 @@ public class MonthlyPostFrequencyResult implements StatisticsResult, Infographic
   }
 
   /**
-   * Returns the result data in JSON format for the client to use in the rendering of the infographic.
+   * Writes the result data in JSON format for the client to use in the rendering of the infographic.
    *
    * Returns the monthly post frequency of the user.  This is represented as an array of 12 integers, where the value is
    * the number of posts made for that month of the year, with index 0 being January, index 1 being February, etc.  This
@@ -119,64 +124,18 @@ public class MonthlyPostFrequencyResult implements StatisticsResult, Infographic
    *
    * This data will be used by the "Monthly Post Frequency" infographic to populate and render.
    *
-   * @return A JSON representation of the user's monthly post frequency data
+   * @param writer The writer to write the user's monthly post frequency data to
+   * @throws IOException If the underlying writer fails
    */
   @Override
-  public String getInfographicJson() {
-    String json = "{" +
-                  "  \"frequency\": [" +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[0] + "," +
-                  "      \"x\": 0" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[1] + "," +
-                  "      \"x\": 11" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[2] + "," +
-                  "      \"x\": 22" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[3] + "," +
-                  "      \"x\": 33" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[4] + "," +
-                  "      \"x\": 44" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[5] + "," +
-                  "      \"x\": 55" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[6] + "," +
-                  "      \"x\": 66" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[7] + "," +
-                  "      \"x\": 77" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[8] + "," +
-                  "      \"x\": 88" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[9] + "," +
-                  "      \"x\": 99" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[10] + "," +
-                  "      \"x\": 110" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + postsByMonthOfYear[11] + "," +
-                  "      \"x\": 120" +
-                  "    }" +
-                  "  ]," +
-                  "  \"color\": \"#3a5897\"" +
-                  "}";
-
-    return new Minify().minify(json);
+  public void writeInfographicJson(JsonStreamWriter writer) throws IOException {
+    writer.beginObject().name("frequency").beginArray();
+    for (int i = 0; i < MONTH_POSITIONS.length; i++) {
+      writer.beginObject()
+          .name("value").value(postsByMonthOfYear[i])
+          .name("x").value(MONTH_POSITIONS[i])
+          .endObject();
+    }
+    writer.endArray().name("color").value("#3a5897").endObject();
   }
 }
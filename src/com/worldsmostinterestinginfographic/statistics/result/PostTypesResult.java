@@ -18,9 +18,10 @@
 
 package com.worldsmostinterestinginfographic.statistics.result;
 
-import com.whoischarles.util.json.Minify;
 import com.worldsmostinterestinginfographic.model.object.Post;
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -57,7 +58,7 @@ public class PostTypesResult implements StatisticsResult, InfographicResult {
   }
 
   /**
-   * Returns the result data in JSON format for the client to use in the rendering of the infographic.
+   * Writes the result data in JSON format for the client to use in the rendering of the infographic.
    *
    * Returns the user's usage count of the following post types:
    *
@@ -106,43 +107,27 @@ public class PostTypesResult implements StatisticsResult, InfographicResult {
    *
    * This data will be used by the "Post Types" infographic to populate and render.
    *
-   * @return A JSON representation of the user's post-types data
+   * @param writer The writer to write the user's post-types data to
+   * @throws IOException If the underlying writer fails
    */
   @Override
-  public String getInfographicJson() {
-    String json = "{" +
-                  "  \"types\": [" +
-                  "    {" +
-                  "      \"value\": " + (postTypesCount.containsKey(Post.Type.STATUS) ? postTypesCount.get(Post.Type.STATUS) : 0) + "," +
-                  "      \"description\": \"Status Update\"," +
-                  "      \"shortname\": \"status updates\"," +
-                  "      \"color\": \"#3b5998\"," +
-                  "      \"colorclass\": \"blue\"" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + (postTypesCount.containsKey(Post.Type.PHOTO) ? postTypesCount.get(Post.Type.PHOTO) : 0) + "," +
-                  "      \"description\": \"Image Post\"," +
-                  "      \"shortname\": \"photos\"," +
-                  "      \"color\": \"#5bc0bd\"," +
-                  "      \"colorclass\": \"green\"" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + (postTypesCount.containsKey(Post.Type.LINK) ? postTypesCount.get(Post.Type.LINK) : 0) + "," +
-                  "      \"description\": \"Shared Link\"," +
-                  "      \"shortname\": \"shared links\"," +
-                  "      \"color\": \"#2ebaeb\"," +
-                  "      \"colorclass\": \"blue-light\"" +
-                  "    }," +
-                  "    {" +
-                  "      \"value\": " + (postTypesCount.containsKey(Post.Type.VIDEO) ? postTypesCount.get(Post.Type.VIDEO) : 0) + "," +
-                  "      \"description\": \"Video Post\"," +
-                  "      \"shortname\": \"videos\"," +
-                  "      \"color\": \"#f08a4b\"," +
-                  "      \"colorclass\": \"orange\"" +
-                  "    }" +
-                  "  ]" +
-                  "}";
+  public void writeInfographicJson(JsonStreamWriter writer) throws IOException {
+    writer.beginObject().name("types").beginArray();
+    writePostType(writer, Post.Type.STATUS, "Status Update", "status updates", "#3b5998", "blue");
+    writePostType(writer, Post.Type.PHOTO, "Image Post", "photos", "#5bc0bd", "green");
+    writePostType(writer, Post.Type.LINK, "Shared Link", "shared links", "#2ebaeb", "blue-light");
+    writePostType(writer, Post.Type.VIDEO, "Video Post", "videos", "#f08a4b", "orange");
+    writer.endArray().endObject();
+  }
 
-    return new Minify().minify(json);
+  private void writePostType(JsonStreamWriter writer, Post.Type type, String description, String shortName,
+                             String color, String colorClass) throws IOException {
+    writer.beginObject()
+        .name("value").value(postTypesCount.containsKey(type) ? postTypesCount.get(type) : 0)
+        .name("description").value(description)
+        .name("shortname").value(shortName)
+        .name("color").value(color)
+        .name("colorclass").value(colorClass)
+        .endObject();
   }
 }
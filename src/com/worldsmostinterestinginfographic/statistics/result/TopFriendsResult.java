@@ -18,9 +18,10 @@
 
 package com.worldsmostinterestinginfographic.statistics.result;
 
-import com.whoischarles.util.json.Minify;
 import com.worldsmostinterestinginfographic.model.object.User;
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -30,11 +31,17 @@ import java.util.Map;
  *
  * The result contains an ordered list of the user's friends where the front of the list (i.e. index 0) is the user's
  * top friend (i.e. the friend who has liked his posts the most).  The 2nd position in the list represents the user's
- * 2nd best friend, the 3rd for the 3rd, and so on.
+ * 2nd best friend, the 3rd for the 3rd, and so on.  Only the top <code>NUMBER_OF_TOP_FRIENDS</code> friends are held.
  */
 public class TopFriendsResult implements StatisticsResult, InfographicResult {
 
+  public static final int NUMBER_OF_TOP_FRIENDS = 4;
+
+  private static final String[] FRIEND_COLORS = { "#3b5998", "#5bc0bd", "#f08a4b", "#1c2541" };
+
   private List<Map.Entry<User, Integer>> topFriends;
+  private boolean approximate;
+  private int maxError;
   private String error;
 
   public TopFriendsResult(List<Map.Entry<User, Integer>> topFriends) {
@@ -45,6 +52,18 @@ public class TopFriendsResult implements StatisticsResult, InfographicResult {
     this.topFriends = topFriends;
   }
 
+  /**
+   * Creates a result from approximate counts.
+   *
+   * @param topFriends The top friends and their (estimated) counts
+   * @param maxError The most by which any count may be overestimated
+   */
+  public TopFriendsResult(List<Map.Entry<User, Integer>> topFriends, int maxError) {
+    this(topFriends);
+    this.approximate = true;
+    this.maxError = maxError;
+  }
+
   public TopFriendsResult(String error) {
     this.error = error;
   }
@@ -60,7 +79,21 @@ public class TopFriendsResult implements StatisticsResult, InfographicResult {
   }
 
   /**
-   * Returns the result data in JSON format for the client to use in the rendering of the infographic.
+   * @return Whether the counts in this result are approximate
+   */
+  public boolean isApproximate() {
+    return approximate;
+  }
+
+  /**
+   * @return The most by which any count in this result may be overestimated, if approximate
+   */
+  public int getMaxError() {
+    return maxError;
+  }
+
+  /**
+   * Writes the result data in JSON format for the client to use in the rendering of the infographic.
    *
    * Returns the user's top 4 friends represented in a particular JSON response format expected by the "Top Friends"
    * infographic on the client.  An example JSON response looks like:
@@ -94,50 +127,36 @@ public class TopFriendsResult implements StatisticsResult, InfographicResult {
    *   ]
    * }
    *
-   * This data will be used by the "Top Friends" infographic to populate and render.
+   * This data will be used by the "Top Friends" infographic to populate and render.  Should the likes have been counted
+   * approximately, a 'maxerror' property additionally gives the most by which any count may be overestimated.  Should
+   * the user have fewer than 4 friends, <code>null</code> is written instead.
    *
-   * @return A JSON representation of the user's top-friends data
+   * @param writer The writer to write the user's top-friends data to
+   * @throws IOException If the underlying writer fails
    */
   @Override
-  public String getInfographicJson() {
+  public void writeInfographicJson(JsonStreamWriter writer) throws IOException {
+
+    if (topFriends.size() < NUMBER_OF_TOP_FRIENDS) {
+      writer.nullValue();
+      return;
+    }
 
-    if (topFriends.size() < 4) {
-      return null;
+    writer.beginObject().name("friends").beginArray();
+    for (int i = 0; i < NUMBER_OF_TOP_FRIENDS; i++) {
+      User friend = topFriends.get(i).getKey();
+      writer.beginObject()
+          .name("imgSrc").value("https://graph.facebook.com/" + friend.getId() + "/picture?width=85&height=85")
+          .name("likes").value(topFriends.get(i).getValue())
+          .name("name").value(friend.getName())
+          .name("color").value(FRIEND_COLORS[i])
+          .endObject();
     }
+    writer.endArray();
 
-    String json = "{" +
-                  "  \"friends\": [" +
-                  "    {" +
-                  "      \"imgSrc\": \"https://graph.facebook.com/" + topFriends.get(0).getKey().getId()
-                  + "/picture?width=85&height=85\"," +
-                  "      \"likes\": " + topFriends.get(0).getValue() + "," +
-                  "      \"name\": \"" + topFriends.get(0).getKey().getName() + "\"," +
-                  "      \"color\": \"#3b5998\"" +
-                  "    }," +
-                  "    {" +
-                  "      \"imgSrc\": \"https://graph.facebook.com/" + topFriends.get(1).getKey().getId()
-                  + "/picture?width=85&height=85\"," +
-                  "      \"likes\": " + topFriends.get(1).getValue() + "," +
-                  "      \"name\": \"" + topFriends.get(1).getKey().getName() + "\"," +
-                  "      \"color\": \"#5bc0bd\"" +
-                  "    }," +
-                  "    {" +
-                  "      \"imgSrc\": \"https://graph.facebook.com/" + topFriends.get(2).getKey().getId()
-                  + "/picture?width=85&height=85\"," +
-                  "      \"likes\": " + topFriends.get(2).getValue() + "," +
-                  "      \"name\": \"" + topFriends.get(2).getKey().getName() + "\"," +
-                  "      \"color\": \"#f08a4b\"" +
-                  "    }," +
-                  "    {" +
-                  "      \"imgSrc\": \"https://graph.facebook.com/" + topFriends.get(3).getKey().getId()
-                  + "/picture?width=85&height=85\"," +
-                  "      \"likes\": " + topFriends.get(3).getValue() + "," +
-                  "      \"name\": \"" + topFriends.get(3).getKey().getName() + "\"," +
-                  "      \"color\": \"#1c2541\"" +
-                  "    }" +
-                  "  ]" +
-                  "}";
-
-    return new Minify().minify(json);
+    if (approximate) {
+      writer.name("maxerror").value(maxError);
+    }
+    writer.endObject();
   }
 }
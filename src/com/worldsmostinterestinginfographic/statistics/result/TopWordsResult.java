@@ -18,6 +18,9 @@
 
 package com.worldsmostinterestinginfographic.statistics.result;
 
+import com.worldsmostinterestinginfographic.util.JsonStreamWriter;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -27,11 +30,16 @@ import java.util.Map;
  * This class encapsulates the response from the collection of a user's most frequently used words via the
  * <code>com.worldsmostinterestinginfographic.statistics.collect.TopWordsCollector</code>.
  *
- * The result contains an ordered list of word-count entries.
+ * The result contains an ordered list of word-count entries, holding only the top <code>NUMBER_OF_TOP_WORDS</code>
+ * words.
  */
 public class TopWordsResult implements StatisticsResult, InfographicResult {
 
+  public static final int NUMBER_OF_TOP_WORDS = 15;
+
   private List<Map.Entry<String, Integer>> topWords;
+  private boolean approximate;
+  private int maxError;
   private String error;
 
   public TopWordsResult(List<Map.Entry<String, Integer>> topWords) {
@@ -42,6 +50,18 @@ public class TopWordsResult implements StatisticsResult, InfographicResult {
     this.topWords = topWords;
   }
 
+  /**
+   * Creates a result from approximate counts.
+   *
+   * @param topWords The top words and their (estimated) counts
+   * @param maxError The most by which any count may be overestimated
+   */
+  public TopWordsResult(List<Map.Entry<String, Integer>> topWords, int maxError) {
+    this(topWords);
+    this.approximate = true;
+    this.maxError = maxError;
+  }
+
   public TopWordsResult(String error) {
     this.error = error;
   }
@@ -57,7 +77,21 @@ public class TopWordsResult implements StatisticsResult, InfographicResult {
   }
 
   /**
-   * Returns the result data in JSON format for the client to use in the rendering of the infographic.
+   * @return Whether the counts in this result are approximate
+   */
+  public boolean isApproximate() {
+    return approximate;
+  }
+
+  /**
+   * @return The most by which any count in this result may be overestimated, if approximate
+   */
+  public int getMaxError() {
+    return maxError;
+  }
+
+  /**
+   * Writes the result data in JSON format for the client to use in the rendering of the infographic.
    *
    * Returns the user's most frequently used words.  This data is represented in 2 parts: HTML data used for the display
    * of the user's word cloud, and the single most used word.  These are represented as 2 properties of the result:
@@ -68,44 +102,55 @@ public class TopWordsResult implements StatisticsResult, InfographicResult {
    *   "topword":"Bombastic"
    * }
    *
-   * This data will be used by the "Top Words" infographic to populate and render.
+   * This data will be used by the "Top Words" infographic to populate and render.  Should the words have been counted
+   * approximately, a 'maxerror' property additionally gives the most by which any count may be overestimated.  A user
+   * who has not used any words gets an empty 'html' cloud and no 'topword' property.
    *
-   * @return A JSON representation of the user's most frequently used words data
+   * @param writer The writer to write the user's most frequently used words data to
+   * @throws IOException If the underlying writer fails
    */
   @Override
-  public String getInfographicJson() {
+  public void writeInfographicJson(JsonStreamWriter writer) throws IOException {
 
-    // We're only interested in the user's top used 15 words
-    List<Map.Entry<String, Integer>> top15Words = topWords.subList(0, 15);
+    // We're only interested in the user's top used 15 words, should they have used that many
+    List<Map.Entry<String, Integer>> top15Words =
+        topWords.subList(0, Math.min(topWords.size(), NUMBER_OF_TOP_WORDS));
 
     // Build word-cloud HTML
     List<String> wordsHtml = new ArrayList<>(top15Words.size());
     int emphasis = 5;
-    int previousCount = top15Words.get(0).getValue();
+    int previousCount = top15Words.isEmpty() ? 0 : top15Words.get(0).getValue();
     for (int i = 0; i < top15Words.size(); i++) {
 
       if (emphasis > 0 && top15Words.get(i).getValue() < previousCount) {
         emphasis--;
       }
 
-      wordsHtml.add("<li class=\\\"" + giveMeVees(emphasis) + (emphasis > 0 ? "-" : "") + "popular\\\"><a href=\\\"#\\\"/>" + top15Words.get(i).getKey() + "</a></li>");
+      wordsHtml.add("<li class=\"" + giveMeVees(emphasis) + (emphasis > 0 ? "-" : "") + "popular\"><a href=\"#\"/>"
+          + top15Words.get(i).getKey() + "</a></li>");
     }
 
     // Let's shuffle them for the word-cloud
     Collections.shuffle(wordsHtml);
 
     // Merge
-    String html = "";
+    StringBuilder html = new StringBuilder();
     for (String wordHtml : wordsHtml) {
-      html += wordHtml;
+      html.append(wordHtml);
     }
 
-    String json = "{" +
-                  "	\"html\": \"" + html + "\"," +
-                  "	\"topword\": \"" + top15Words.get(0).getKey() + "\"" +
-                  "}";
+    writer.beginObject()
+        .name("html").value(html.toString());
+
+    // A user without any words has an empty cloud and no top word
+    if (!top15Words.isEmpty()) {
+      writer.name("topword").value(top15Words.get(0).getKey());
+    }
 
-    return json;
+    if (approximate) {
+      writer.name("maxerror").value(maxError);
+    }
+    writer.endObject();
   }
 
   /**
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+/**
+ * Date and time utilities.
+ *
+ * Times are represented as primitive seconds since the epoch (1970-01-01T00:00:00Z), and broken down into calendar
+ * fields (in UTC, on the proleptic Gregorian calendar) with plain integer arithmetic, so that neither a
+ * <code>Calendar</code> nor a <code>SimpleDateFormat</code> need be created per value.
+ */
+public enum DateTimeUtils {
+  INSTANCE;
+
+  public static final int SECONDS_PER_DAY = 86400;
+
+  // Day of week of the epoch (a Thursday), counting from Sunday as 0
+  private static final int EPOCH_DAY_OF_WEEK = 4;
+
+  /**
+   * Parses an ISO-8601 date-time of the fixed layout used by the Graph API, <code>yyyy-MM-ddTHH:mm:ss</code> followed
+   * by a UTC offset of the form <code>+hhmm</code>, <code>+hh:mm</code> or <code>Z</code> (e.g.
+   * "2015-11-06T23:38:21+0000").
+   *
+   * @param dateTime The date-time to parse
+   * @return The number of seconds since the epoch, or <code>Long.MIN_VALUE</code> if the input is null or not of the
+   * expected layout
+   */
+  public static long parseIsoDateTime(CharSequence dateTime) {
+    if (dateTime == null || dateTime.length() < 20 || dateTime.charAt(4) != '-' || dateTime.charAt(7) != '-' ||
+        dateTime.charAt(10) != 'T' || dateTime.charAt(13) != ':' || dateTime.charAt(16) != ':') {
+      return Long.MIN_VALUE;
+    }
+
+    int year = digits(dateTime, 0, 4);
+    int month = digits(dateTime, 5, 2);
+    int day = digits(dateTime, 8, 2);
+    int hour = digits(dateTime, 11, 2);
+    int minute = digits(dateTime, 14, 2);
+    int second = digits(dateTime, 17, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 || minute < 0 ||
+        minute > 59 || second < 0 || second > 60) {
+      return Long.MIN_VALUE;
+    }
+
+    int offsetSeconds = parseOffset(dateTime, 19);
+    if (offsetSeconds == Integer.MIN_VALUE) {
+      return Long.MIN_VALUE;
+    }
+
+    return daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second - offsetSeconds;
+  }
+
+  /**
+   * Returns the day of the week of the given time, in UTC.
+   *
+   * @param epochSeconds The number of seconds since the epoch
+   * @return The day of the week, from 0 (Sunday) to 6 (Saturday)
+   */
+  public static int dayOfWeek(long epochSeconds) {
+    return (int) Math.floorMod(Math.floorDiv(epochSeconds, SECONDS_PER_DAY) + EPOCH_DAY_OF_WEEK, 7);
+  }
+
+  /**
+   * Returns the month of the year of the given time, in UTC.
+   *
+   * @param epochSeconds The number of seconds since the epoch
+   * @return The month of the year, from 0 (January) to 11 (December)
+   */
+  public static int monthOfYear(long epochSeconds) {
+
+    // Shift the epoch day into a 400-year era of days counted from March 1st, so that leap days fall at the end of a
+    // year (see http://howardhinnant.github.io/date_algorithms.html)
+    long days = Math.floorDiv(epochSeconds, SECONDS_PER_DAY) + 719468;
+    long dayOfEra = Math.floorMod(days, 146097);
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long monthFromMarch = (5 * dayOfYear + 2) / 153;
+
+    return (int) (monthFromMarch < 10 ? monthFromMarch + 2 : monthFromMarch - 10);
+  }
+
+  /**
+   * Returns the number of days since the epoch of the given civil date.
+   */
+  private static long daysFromCivil(int year, int month, int day) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /**
+   * Parses a UTC offset of the form <code>+hhmm</code>, <code>+hh:mm</code> or <code>Z</code> making up the rest of the
+   * input from the given index.
+   *
+   * @return The offset in seconds, or <code>Integer.MIN_VALUE</code> if malformed
+   */
+  private static int parseOffset(CharSequence dateTime, int index) {
+    int length = dateTime.length() - index;
+    char sign = dateTime.charAt(index);
+    if (sign == 'Z' && length == 1) {
+      return 0;
+    }
+
+    if ((sign != '+' && sign != '-') || (length != 5 && length != 6) ||
+        (length == 6 && dateTime.charAt(index + 3) != ':')) {
+      return Integer.MIN_VALUE;
+    }
+
+    int hours = digits(dateTime, index + 1, 2);
+    int minutes = digits(dateTime, index + length - 2, 2);
+    if (hours < 0 || minutes < 0) {
+      return Integer.MIN_VALUE;
+    }
+
+    int offset = hours * 3600 + minutes * 60;
+    return sign == '-' ? -offset : offset;
+  }
+
+  /**
+   * Parses the given number of decimal digits starting at the given index.
+   *
+   * @return The value of the digits, or -1 if any is not a digit
+   */
+  private static int digits(CharSequence text, int index, int count) {
+    int value = 0;
+    for (int i = index; i < index + count; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+
+    return value;
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import com.worldsmostinterestinginfographic.model.Model;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP utilities.
+ *
+ * This enum owns the single, long-lived HTTP client used for all outbound requests (i.e. the token endpoint and the
+ * Facebook Graph APIs).  The client is backed by a pooled connection manager so that connections, and their TLS
+ * sessions, are kept alive and reused across requests rather than being re-established for every call.
+ */
+public enum HttpUtils {
+  INSTANCE;
+
+  private static final PoolingHttpClientConnectionManager connectionManager;
+  private static final CloseableHttpClient httpClient;
+
+  static {
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(Model.HTTP_MAX_CONNECTIONS_TOTAL);
+    connectionManager.setDefaultMaxPerRoute(Model.HTTP_MAX_CONNECTIONS_PER_ROUTE);
+
+    // Re-validate connections that have been sitting idle before handing them out again
+    connectionManager.setValidateAfterInactivity(Model.HTTP_CONNECTION_IDLE_TIMEOUT_MILLIS / 2);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout(Model.HTTP_CONNECT_TIMEOUT_MILLIS)
+        .setConnectionRequestTimeout(Model.HTTP_CONNECT_TIMEOUT_MILLIS)
+        .setSocketTimeout(Model.HTTP_SOCKET_TIMEOUT_MILLIS)
+        .build();
+
+    httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setConnectionManagerShared(true)
+        .setDefaultRequestConfig(requestConfig)
+        .build();
+  }
+
+  /**
+   * Returns the shared HTTP client.
+   *
+   * The returned client is thread-safe and must not be closed by callers.  Callers are, however, responsible for
+   * closing (or fully consuming) each response so that its connection is released back to the pool.
+   *
+   * Idle and expired connections are evicted opportunistically on each call rather than by a background monitor thread,
+   * since App Engine restricts the creation of long-lived background threads.
+   *
+   * @return The shared, pooled HTTP client
+   */
+  public static CloseableHttpClient getHttpClient() {
+    connectionManager.closeExpiredConnections();
+    connectionManager.closeIdleConnections(Model.HTTP_CONNECTION_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+    return httpClient;
+  }
+}
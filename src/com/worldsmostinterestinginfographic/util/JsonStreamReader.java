@@ -0,0 +1,576 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal, pull-based JSON reader.
+ *
+ * Rather than materializing an entire document into a tree of objects (as <code>JSONObject</code> does), this reader
+ * exposes the document as a stream of tokens read directly off of the underlying <code>Reader</code>.  Callers walk the
+ * document with <code>beginObject()</code>/<code>nextName()</code>/<code>nextString()</code> and friends, building
+ * their own model objects as they go, and skip anything they are not interested in with <code>skipValue()</code>.
+ *
+ * Characters are read through a single internal buffer, strings are created directly from that buffer wherever
+ * possible, object member names are de-duplicated through a small cache, and numeric values can be read as primitives
+ * without creating a <code>String</code> at all.
+ *
+ * This class is not thread-safe.
+ */
+public final class JsonStreamReader implements Closeable {
+
+  /**
+   * The kinds of tokens that may be found in a JSON document.
+   */
+  public static enum Token {
+    BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+  }
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int NAME_CACHE_SIZE = 64;
+
+  // Lexical scopes
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+
+  private final Reader in;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int pos = 0;
+  private int limit = 0;
+
+  private int[] stack = new int[32];
+  private int stackSize = 0;
+
+  private Token peeked;
+  private boolean peekedBoolean;
+
+  private final StringBuilder scratch = new StringBuilder();
+  private final String[] nameCache = new String[NAME_CACHE_SIZE];
+
+  public JsonStreamReader(Reader in) {
+    if (in == null) {
+      throw new IllegalArgumentException();
+    }
+
+    this.in = in;
+    push(EMPTY_DOCUMENT);
+  }
+
+  /**
+   * Returns the type of the next token without consuming it.
+   *
+   * @return The type of the next token
+   * @throws IOException If the underlying reader fails or the document is malformed
+   */
+  public Token peek() throws IOException {
+    if (peeked != null) {
+      return peeked;
+    }
+
+    int c;
+    switch (stack[stackSize - 1]) {
+      case EMPTY_ARRAY:
+        stack[stackSize - 1] = NONEMPTY_ARRAY;
+        c = nextNonWhitespace();
+        if (c == ']') {
+          return peeked = Token.END_ARRAY;
+        }
+        pos--;
+        return peeked = peekValue();
+
+      case NONEMPTY_ARRAY:
+        c = nextNonWhitespace();
+        if (c == ']') {
+          return peeked = Token.END_ARRAY;
+        } else if (c != ',') {
+          throw syntaxError("Expected ',' or ']'");
+        }
+        return peeked = peekValue();
+
+      case EMPTY_OBJECT:
+      case NONEMPTY_OBJECT:
+        boolean empty = stack[stackSize - 1] == EMPTY_OBJECT;
+        stack[stackSize - 1] = DANGLING_NAME;
+        c = nextNonWhitespace();
+        if (c == '}') {
+          return peeked = Token.END_OBJECT;
+        }
+        if (!empty) {
+          if (c != ',') {
+            throw syntaxError("Expected ',' or '}'");
+          }
+          c = nextNonWhitespace();
+        }
+        if (c != '"') {
+          throw syntaxError("Expected name");
+        }
+        return peeked = Token.NAME;
+
+      case DANGLING_NAME:
+        stack[stackSize - 1] = NONEMPTY_OBJECT;
+        if (nextNonWhitespace() != ':') {
+          throw syntaxError("Expected ':'");
+        }
+        return peeked = peekValue();
+
+      case EMPTY_DOCUMENT:
+        stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        return peeked = peekValue();
+
+      default:
+        if (!fill(1) || nextNonWhitespaceOrEnd() == -1) {
+          return peeked = Token.END_DOCUMENT;
+        }
+        throw syntaxError("Expected end of document");
+    }
+  }
+
+  /**
+   * Returns true if the current array or object has another element.
+   *
+   * @return True if there is another element in the current array or object; false otherwise
+   * @throws IOException If the underlying reader fails or the document is malformed
+   */
+  public boolean hasNext() throws IOException {
+    Token token = peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+  }
+
+  public void beginObject() throws IOException {
+    expect(Token.BEGIN_OBJECT);
+    push(EMPTY_OBJECT);
+  }
+
+  public void endObject() throws IOException {
+    expect(Token.END_OBJECT);
+    stackSize--;
+  }
+
+  public void beginArray() throws IOException {
+    expect(Token.BEGIN_ARRAY);
+    push(EMPTY_ARRAY);
+  }
+
+  public void endArray() throws IOException {
+    expect(Token.END_ARRAY);
+    stackSize--;
+  }
+
+  /**
+   * Consumes the next object member name.
+   *
+   * Member names are returned from a small cache where possible, so repeated names (e.g. "id" for every post in a feed)
+   * do not each produce a new <code>String</code>.
+   *
+   * @return The member name
+   * @throws IOException If the underlying reader fails or the document is malformed
+   */
+  public String nextName() throws IOException {
+    expect(Token.NAME);
+
+    // Fast path: the whole name, with no escapes, is already in the buffer
+    for (int i = pos; i < limit; i++) {
+      char c = buffer[i];
+      if (c == '\\') {
+        break;
+      }
+      if (c == '"') {
+        String name = cachedName(pos, i - pos);
+        pos = i + 1;
+        return name;
+      }
+    }
+
+    return readQuotedString();
+  }
+
+  /**
+   * Consumes the next string value.  Numeric values are also accepted and returned in their literal form.
+   *
+   * @return The string value
+   * @throws IOException If the underlying reader fails or the document is malformed
+   */
+  public String nextString() throws IOException {
+    Token token = peek();
+    if (token == Token.NUMBER) {
+      peeked = null;
+      scratch.setLength(0);
+      readNumberLiteral(scratch);
+      return scratch.toString();
+    }
+
+    expect(Token.STRING);
+    return readQuotedString();
+  }
+
+  /**
+   * Consumes the next numeric value, which may be either a bare number or a quoted string of digits (as Facebook uses
+   * for object IDs), as a primitive <code>long</code>.  No intermediate <code>String</code> is created.
+   *
+   * @return The numeric value
+   * @throws IOException If the underlying reader fails, the document is malformed, or the value is not an integer
+   */
+  public long nextLong() throws IOException {
+    Token token = peek();
+    if (token != Token.NUMBER && token != Token.STRING) {
+      throw syntaxError("Expected a number but was " + token);
+    }
+    peeked = null;
+
+    boolean quoted = token == Token.STRING;
+    boolean negative = false;
+    boolean sawDigit = false;
+    long value = 0;
+    while (fill(1)) {
+      char c = buffer[pos];
+      if (c == '-' && !sawDigit && !negative) {
+        negative = true;
+      } else if (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+        sawDigit = true;
+      } else {
+        break;
+      }
+      pos++;
+    }
+
+    if (!sawDigit) {
+      throw syntaxError("Expected a long");
+    }
+    if (quoted) {
+      if (!fill(1) || buffer[pos] != '"') {
+        throw syntaxError("Expected a long");
+      }
+      pos++;
+    }
+
+    return negative ? -value : value;
+  }
+
+  public boolean nextBoolean() throws IOException {
+    expect(Token.BOOLEAN);
+    return peekedBoolean;
+  }
+
+  public void nextNull() throws IOException {
+    expect(Token.NULL);
+  }
+
+  /**
+   * Skips the next value entirely, including any nested arrays or objects, without creating any strings.
+   *
+   * @throws IOException If the underlying reader fails or the document is malformed
+   */
+  public void skipValue() throws IOException {
+    int depth = 0;
+    do {
+      Token token = peek();
+      peeked = null;
+      switch (token) {
+        case BEGIN_ARRAY:
+          push(EMPTY_ARRAY);
+          depth++;
+          break;
+        case BEGIN_OBJECT:
+          push(EMPTY_OBJECT);
+          depth++;
+          break;
+        case END_ARRAY:
+        case END_OBJECT:
+          if (depth == 0) {
+            throw syntaxError("Expected a value but was " + token);
+          }
+          stackSize--;
+          depth--;
+          break;
+        case NAME:
+        case STRING:
+          skipQuotedString();
+          break;
+        case NUMBER:
+          readNumberLiteral(null);
+          break;
+        case END_DOCUMENT:
+          throw syntaxError("Unexpected end of document");
+        default:
+          break;
+      }
+    } while (depth != 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    peeked = null;
+    stackSize = 0;
+    in.close();
+  }
+
+  private Token peekValue() throws IOException {
+    int c = nextNonWhitespace();
+    switch (c) {
+      case '{':
+        return Token.BEGIN_OBJECT;
+      case '[':
+        return Token.BEGIN_ARRAY;
+      case '"':
+        return Token.STRING;
+      case 't':
+        consumeLiteral("rue");
+        peekedBoolean = true;
+        return Token.BOOLEAN;
+      case 'f':
+        consumeLiteral("alse");
+        peekedBoolean = false;
+        return Token.BOOLEAN;
+      case 'n':
+        consumeLiteral("ull");
+        return Token.NULL;
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          pos--;
+          return Token.NUMBER;
+        }
+        throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+  private void expect(Token expected) throws IOException {
+    Token token = peek();
+    if (token != expected) {
+      throw syntaxError("Expected " + expected + " but was " + token);
+    }
+    peeked = null;
+  }
+
+  private void push(int scope) {
+    if (stackSize == stack.length) {
+      int[] newStack = new int[stackSize * 2];
+      System.arraycopy(stack, 0, newStack, 0, stackSize);
+      stack = newStack;
+    }
+    stack[stackSize++] = scope;
+  }
+
+  /**
+   * Ensures that at least <code>minimum</code> characters are available in the buffer, compacting and refilling it as
+   * necessary.
+   */
+  private boolean fill(int minimum) throws IOException {
+    if (limit - pos >= minimum) {
+      return true;
+    }
+
+    if (pos != 0) {
+      limit -= pos;
+      System.arraycopy(buffer, pos, buffer, 0, limit);
+      pos = 0;
+    }
+
+    int read;
+    while ((read = in.read(buffer, limit, buffer.length - limit)) != -1) {
+      limit += read;
+      if (limit >= minimum) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int c = nextNonWhitespaceOrEnd();
+    if (c == -1) {
+      throw syntaxError("Unexpected end of document");
+    }
+    return c;
+  }
+
+  private int nextNonWhitespaceOrEnd() throws IOException {
+    while (pos < limit || fill(1)) {
+      char c = buffer[pos++];
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  private void consumeLiteral(String remainder) throws IOException {
+    if (!fill(remainder.length())) {
+      throw syntaxError("Unexpected end of document");
+    }
+    for (int i = 0; i < remainder.length(); i++) {
+      if (buffer[pos++] != remainder.charAt(i)) {
+        throw syntaxError("Unexpected literal");
+      }
+    }
+  }
+
+  /**
+   * Reads the remainder of a quoted string (the opening quote has already been consumed), including the closing quote.
+   */
+  private String readQuotedString() throws IOException {
+
+    // Fast path: the whole string, with no escapes, is already in the buffer
+    for (int i = pos; i < limit; i++) {
+      char c = buffer[i];
+      if (c == '\\') {
+        break;
+      }
+      if (c == '"') {
+        String value = new String(buffer, pos, i - pos);
+        pos = i + 1;
+        return value;
+      }
+    }
+
+    scratch.setLength(0);
+    readQuotedStringInto(scratch);
+    return scratch.toString();
+  }
+
+  private void skipQuotedString() throws IOException {
+    readQuotedStringInto(null);
+  }
+
+  private void readQuotedStringInto(StringBuilder out) throws IOException {
+    while (true) {
+      int start = pos;
+      while (pos < limit) {
+        char c = buffer[pos++];
+        if (c == '"') {
+          if (out != null) {
+            out.append(buffer, start, pos - start - 1);
+          }
+          return;
+        }
+        if (c == '\\') {
+          if (out != null) {
+            out.append(buffer, start, pos - start - 1);
+          }
+          char escaped = readEscapeCharacter();
+          if (out != null) {
+            out.append(escaped);
+          }
+          start = pos;
+        }
+      }
+
+      if (out != null) {
+        out.append(buffer, start, pos - start);
+      }
+      if (!fill(1)) {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+  private char readEscapeCharacter() throws IOException {
+    if (!fill(1)) {
+      throw syntaxError("Unterminated escape sequence");
+    }
+
+    char c = buffer[pos++];
+    switch (c) {
+      case 'u':
+        if (!fill(4)) {
+          throw syntaxError("Unterminated escape sequence");
+        }
+        char result = 0;
+        for (int i = 0; i < 4; i++) {
+          char h = buffer[pos++];
+          result <<= 4;
+          if (h >= '0' && h <= '9') {
+            result += (h - '0');
+          } else if (h >= 'a' && h <= 'f') {
+            result += (h - 'a' + 10);
+          } else if (h >= 'A' && h <= 'F') {
+            result += (h - 'A' + 10);
+          } else {
+            throw syntaxError("Malformed unicode escape");
+          }
+        }
+        return result;
+      case 't':
+        return '\t';
+      case 'b':
+        return '\b';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 'f':
+        return '\f';
+      default:
+        return c;
+    }
+  }
+
+  private void readNumberLiteral(StringBuilder out) throws IOException {
+    while (fill(1)) {
+      char c = buffer[pos];
+      if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+        if (out != null) {
+          out.append(c);
+        }
+        pos++;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private String cachedName(int offset, int length) {
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + buffer[i];
+    }
+
+    int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+    String cached = nameCache[slot];
+    if (cached != null && cached.length() == length) {
+      boolean matches = true;
+      for (int i = 0; i < length; i++) {
+        if (cached.charAt(i) != buffer[offset + i]) {
+          matches = false;
+          break;
+        }
+      }
+      if (matches) {
+        return cached;
+      }
+    }
+
+    String name = new String(buffer, offset, length);
+    nameCache[slot] = name;
+    return name;
+  }
+
+  private IOException syntaxError(String message) {
+    return new IOException("Malformed JSON: " + message);
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A minimal, push-based JSON writer, the counterpart to <code>JsonStreamReader</code>.
+ *
+ * Rather than building a document as a tree of objects (as <code>JSONObject</code> does) or as concatenated strings,
+ * callers write the document token by token with <code>beginObject()</code>/<code>name()</code>/<code>value()</code>
+ * and friends, straight to the underlying <code>Writer</code>.  Output is compact, with no whitespace, and strings are
+ * escaped exactly as <code>JSONObject.quote()</code> escapes them, so a document written here is byte for byte what
+ * <code>JSONObject.toString()</code> would produce for the same members in the same order.
+ *
+ * This class is not thread-safe.
+ */
+public final class JsonStreamWriter implements Closeable, Flushable {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  // Lexical scopes
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+
+  private final Writer out;
+
+  private int[] stack = new int[32];
+  private int stackSize = 0;
+
+  public JsonStreamWriter(Writer out) {
+    if (out == null) {
+      throw new IllegalArgumentException();
+    }
+
+    this.out = out;
+    push(EMPTY_DOCUMENT);
+  }
+
+  public JsonStreamWriter beginObject() throws IOException {
+    beforeValue();
+    push(EMPTY_OBJECT);
+    out.write('{');
+    return this;
+  }
+
+  public JsonStreamWriter endObject() throws IOException {
+    return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+  }
+
+  public JsonStreamWriter beginArray() throws IOException {
+    beforeValue();
+    push(EMPTY_ARRAY);
+    out.write('[');
+    return this;
+  }
+
+  public JsonStreamWriter endArray() throws IOException {
+    return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+  }
+
+  /**
+   * Writes an object member name.  The member's value must be written next.
+   *
+   * @param name The member name
+   * @return This writer
+   * @throws IOException If the underlying writer fails
+   */
+  public JsonStreamWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int scope = stack[stackSize - 1];
+    if (scope == NONEMPTY_OBJECT) {
+      out.write(',');
+    } else if (scope != EMPTY_OBJECT) {
+      throw new IllegalStateException("Name outside of an object");
+    }
+
+    stack[stackSize - 1] = DANGLING_NAME;
+    writeQuoted(name);
+    out.write(':');
+    return this;
+  }
+
+  /**
+   * Writes a string value, or <code>null</code> if the given string is null.
+   *
+   * @param value The string value
+   * @return This writer
+   * @throws IOException If the underlying writer fails
+   */
+  public JsonStreamWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+
+    beforeValue();
+    writeQuoted(value);
+    return this;
+  }
+
+  public JsonStreamWriter value(long value) throws IOException {
+    beforeValue();
+    out.write(Long.toString(value));
+    return this;
+  }
+
+  public JsonStreamWriter value(boolean value) throws IOException {
+    beforeValue();
+    out.write(value ? "true" : "false");
+    return this;
+  }
+
+  public JsonStreamWriter nullValue() throws IOException {
+    beforeValue();
+    out.write("null");
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    stackSize = 0;
+    out.close();
+  }
+
+  private JsonStreamWriter close(int emptyScope, int nonEmptyScope, char bracket) throws IOException {
+    int scope = stack[stackSize - 1];
+    if (scope != emptyScope && scope != nonEmptyScope) {
+      throw new IllegalStateException("Nesting problem");
+    }
+
+    stackSize--;
+    out.write(bracket);
+    return this;
+  }
+
+  /**
+   * Writes whatever must precede a value in the current scope, and moves the scope on.
+   */
+  private void beforeValue() throws IOException {
+    switch (stack[stackSize - 1]) {
+      case EMPTY_ARRAY:
+        stack[stackSize - 1] = NONEMPTY_ARRAY;
+        return;
+
+      case NONEMPTY_ARRAY:
+        out.write(',');
+        return;
+
+      case DANGLING_NAME:
+        stack[stackSize - 1] = NONEMPTY_OBJECT;
+        return;
+
+      case EMPTY_DOCUMENT:
+        stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        return;
+
+      default:
+        throw new IllegalStateException("Value without a name, or more than one top-level value");
+    }
+  }
+
+  /**
+   * Writes the given string as a quoted JSON string, escaped just as <code>JSONObject.quote()</code> would escape it.
+   */
+  private void writeQuoted(String string) throws IOException {
+    out.write('"');
+
+    int length = string.length();
+    int unescaped = 0;
+    char previous = 0;
+    for (int i = 0; i < length; i++) {
+      char c = string.charAt(i);
+      String escape = null;
+      switch (c) {
+        case '"':
+          escape = "\\\"";
+          break;
+        case '\\':
+          escape = "\\\\";
+          break;
+        case '/':
+          if (previous == '<') {
+            escape = "\\/";
+          }
+          break;
+        case '\b':
+          escape = "\\b";
+          break;
+        case '\t':
+          escape = "\\t";
+          break;
+        case '\n':
+          escape = "\\n";
+          break;
+        case '\f':
+          escape = "\\f";
+          break;
+        case '\r':
+          escape = "\\r";
+          break;
+        default:
+          if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+            escape = "\\u" + HEX_DIGITS[c >> 12] + HEX_DIGITS[(c >> 8) & 0xF] + HEX_DIGITS[(c >> 4) & 0xF]
+                     + HEX_DIGITS[c & 0xF];
+          }
+          break;
+      }
+
+      // Runs of characters needing no escape are written in one go
+      if (escape != null) {
+        out.write(string, unescaped, i - unescaped);
+        out.write(escape);
+        unescaped = i + 1;
+      }
+      previous = c;
+    }
+
+    out.write(string, unescaped, length - unescaped);
+    out.write('"');
+  }
+
+  private void push(int scope) {
+    if (stackSize == stack.length) {
+      int[] newStack = new int[stackSize * 2];
+      System.arraycopy(stack, 0, newStack, 0, stackSize);
+      stack = newStack;
+    }
+    stack[stackSize++] = scope;
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.cache.Cache;
+
+/**
+ * A small, in-process near cache in front of a shared (e.g. memcache-backed) <code>Cache</code>.
+ *
+ * Reads are served from memory where possible, so that hot entries do not cost a round trip to the backing cache on
+ * every request; anything not found in memory is read from the backing cache and remembered.  Writes and removals go
+ * straight through to the backing cache and invalidate the entry held in memory.
+ *
+ * Requests for the same key may land on different instances, each with its own near cache, so an entry is only ever
+ * remembered for a short time-to-live (much shorter than entries live in the backing cache).  A write made on one
+ * instance is seen immediately on that instance, and on every other instance at most one time-to-live later.  The near
+ * cache is therefore only suited to entries that are written once, or for which briefly reading the previous value is
+ * harmless.  Missing entries are never remembered, so an entry written on another instance is seen as soon as it is
+ * needed.  Entries that must be taken at most once should be taken with <code>remove()</code>, which always goes to
+ * the backing cache.
+ *
+ * Values are shared between all readers on an instance and must not be modified once cached.
+ *
+ * This class is thread-safe.
+ */
+public final class NearCache {
+
+  private final Cache backingCache;
+  private final long ttlMillis;
+  private final Map<Object, Entry> entries;
+
+  // Bumped on every write, so that a read racing with a write never remembers the value the write replaced
+  private long writes = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param backingCache The shared cache to front
+   * @param maxEntries The most entries to hold in memory
+   * @param ttlMillis The time, in milliseconds, for which an entry is held in memory; zero to not hold entries at all
+   */
+  public NearCache(Cache backingCache, final int maxEntries, long ttlMillis) {
+    if (maxEntries < 0 || ttlMillis < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.backingCache = backingCache;
+    this.ttlMillis = (maxEntries == 0 ? 0 : ttlMillis);
+    this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, NearCache.Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the value for the given key, from memory if held there and still live, or else from the backing cache.
+   *
+   * @param key The key
+   * @return The value for the key, or null if there is none
+   */
+  public Object get(Object key) {
+    Object value = getNear(key);
+    if (value != null) {
+      hits.incrementAndGet();
+      return value;
+    }
+
+    misses.incrementAndGet();
+    long version = getWrites();
+    value = backingCache.get(key);
+    remember(key, value, version);
+    return value;
+  }
+
+  /**
+   * Writes the given value for the given key through to the backing cache, invalidating whatever is held in memory.
+   *
+   * @param key The key
+   * @param value The value
+   */
+  public void put(Object key, Object value) {
+    backingCache.put(key, value);
+    invalidate(key);
+  }
+
+  /**
+   * Removes and returns the value for the given key from the backing cache, invalidating whatever is held in memory.
+   *
+   * @param key The key
+   * @return The value removed, or null if there was none
+   */
+  public Object remove(Object key) {
+    Object value = backingCache.remove(key);
+    invalidate(key);
+    return value;
+  }
+
+  /**
+   * Forgets whatever is held in memory for the given key, so that the next read goes to the backing cache.
+   *
+   * @param key The key
+   */
+  public void invalidate(Object key) {
+    synchronized (entries) {
+      writes++;
+      entries.remove(key);
+    }
+  }
+
+  /**
+   * @return The number of reads served from memory
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return The number of reads that went to the backing cache
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "NearCache[hits=" + hits + ", misses=" + misses + "]";
+  }
+
+  private Object getNear(Object key) {
+    if (ttlMillis == 0) {
+      return null;
+    }
+
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+
+      if (System.currentTimeMillis() >= entry.expiresMillis) {
+        entries.remove(key);
+        return null;
+      }
+
+      return entry.value;
+    }
+  }
+
+  private long getWrites() {
+    synchronized (entries) {
+      return writes;
+    }
+  }
+
+  /**
+   * Remembers the given value, read from the backing cache, unless there has been a write since the given version.
+   */
+  private void remember(Object key, Object value, long version) {
+    if (ttlMillis == 0 || value == null) {
+      return;
+    }
+
+    Entry entry = new Entry(value, System.currentTimeMillis() + ttlMillis);
+    synchronized (entries) {
+      if (writes == version) {
+        entries.put(key, entry);
+      }
+    }
+  }
+
+  /**
+   * A value held in memory, along with when it must next be read from the backing cache.
+   */
+  private static final class Entry {
+    private final Object value;
+    private final long expiresMillis;
+
+    private Entry(Object value, long expiresMillis) {
+      this.value = value;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+}
@@ -19,17 +19,19 @@
 package com.worldsmostinterestinginfographic.util;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -62,11 +64,11 @@ public enum OAuth2Utils {
    * @return A valid access token if the request was successful; null otherwise.
    */
   public static String requestAccessToken(String tokenEndpoint) {
-    CloseableHttpClient httpClient = HttpClients.createDefault();
+    CloseableHttpResponse httpResponse = null;
     try {
       // Exchange authorization code for access token
       HttpPost httpPost = new HttpPost(tokenEndpoint);
-      HttpResponse httpResponse = httpClient.execute(httpPost);
+      httpResponse = HttpUtils.getHttpClient().execute(httpPost);
       BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(httpResponse.getEntity().getContent()));
       String line = bufferedReader.readLine();
 
@@ -88,12 +90,7 @@ public enum OAuth2Utils {
       log.severe("Fatal exception occurred while making the access token request: " + e.getMessage());
       e.printStackTrace();
     } finally {
-      try {
-        httpClient.close();
-      } catch (IOException e) {
-        log.severe("Fatal exception occurred while closing HTTP client connection: " + e.getMessage());
-        e.printStackTrace();
-      }
+      closeResponse(httpResponse);
     }
 
     return null;
@@ -103,55 +100,113 @@ public enum OAuth2Utils {
    * Make a protected resource request at the given endpoint with the given access token.
    *
    * This method will attempt to access the protected resource with the given access token using the authorization
-   * request header field method.  If successful, the full response string will be returned.
+   * request header field method.  If successful, the full response string will be returned.  Callers that would rather
+   * take the response as a stream or as raw bytes should pass <code>ResponseBody.handler()</code> to
+   * <code>makeProtectedResourceRequest(String, String, ResponseHandler)</code> instead.
    *
    * @param resourceEndpoint The endpoint of the protected resource to access
    * @param accessToken A valid access token with the necessary scopes required to access the protected resource
    * @return The result string returned in response to the request to access the protected resource with the given token
    */
   public static String makeProtectedResourceRequest(String resourceEndpoint, String accessToken) {
-    CloseableHttpClient httpClient = HttpClients.createDefault();
+    ResponseBody responseBody = makeProtectedResourceRequest(resourceEndpoint, accessToken, ResponseBody.handler());
+
+    return responseBody == null ? null : responseBody.toString();
+  }
+
+  /**
+   * Make a protected resource request at the given endpoint with the given access token, handing the response to the
+   * given handler.
+   *
+   * This is the streaming counterpart of <code>makeProtectedResourceRequest(String, String)</code>.  Rather than
+   * buffering the full response into a string, the handler is given the live response and may read its content as it
+   * arrives.  The response is always consumed and its connection released once the handler returns.
+   *
+   * @param resourceEndpoint The endpoint of the protected resource to access
+   * @param accessToken A valid access token with the necessary scopes required to access the protected resource
+   * @param responseHandler The handler that will process the response
+   * @param <T> The type of object produced by the handler
+   * @return The object produced by the handler, or null if the request failed
+   */
+  public static <T> T makeProtectedResourceRequest(String resourceEndpoint, String accessToken,
+                                                   ResponseHandler<? extends T> responseHandler) {
+    return makeProtectedResourceRequest(createProtectedResourceRequest(resourceEndpoint, accessToken), accessToken,
+                                        responseHandler);
+  }
+
+  /**
+   * Make a previously built protected resource request, handing the response to the given handler.
+   *
+   * Building the request separately (see <code>createProtectedResourceRequest(String, String)</code>) allows the caller
+   * to keep hold of it and abort it from another thread, e.g. when the result is no longer needed.  An aborted request
+   * returns null.
+   *
+   * @param request The protected resource request to make
+   * @param accessToken The access token the request was built with, for logging purposes
+   * @param responseHandler The handler that will process the response
+   * @param <T> The type of object produced by the handler
+   * @return The object produced by the handler, or null if the request failed or was aborted
+   */
+  public static <T> T makeProtectedResourceRequest(HttpUriRequest request, String accessToken,
+                                                   ResponseHandler<? extends T> responseHandler) {
     try {
-      httpClient = HttpClients.createDefault();
-
-      // Add authorization header to POST request
-      HttpPost httpPost = new HttpPost(resourceEndpoint);
-      httpPost.addHeader("Authorization", "Bearer " + accessToken);
-
-      /*
-       * Note: The addition of the "method=get" URL-encoded form parameter is necessary for the Facebook Graph APIs.
-       *       Other OAuth 2 providers may not require this, and some may even reject it.
-       */
-      List<NameValuePair> urlParameters = new ArrayList<>();
-      urlParameters.add(new BasicNameValuePair("method", "get"));
-      httpPost.setEntity(new UrlEncodedFormEntity(urlParameters));
-
-      // Make the call
-      HttpResponse httpResponse = httpClient.execute(httpPost);
-
-      // Process the response
-      String response = "";
-      String currentLine;
-      BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(httpResponse.getEntity().getContent()));
-      while ((currentLine = bufferedReader.readLine()) != null) {
-        response += currentLine;
+      return HttpUtils.getHttpClient().execute(request, responseHandler);
+    } catch (IOException e) {
+      if (request.isAborted()) {
+        log.fine("Protected resource request aborted (access token " + LoggingUtils.anonymize(accessToken) + ")");
+        return null;
       }
 
-      return response;
-    } catch (IOException e) {
       log.severe("Fatal exception occurred while making the protected resource request (access token " +
                  LoggingUtils.anonymize(accessToken) + "): " + e.getMessage());
       e.printStackTrace();
-    } finally {
-      try {
-        httpClient.close();
-      } catch (IOException e) {
-        log.severe("Fatal exception occurred while closing HTTP client connection (access token=" +
-                   LoggingUtils.anonymize(accessToken) + "): " + e.getMessage());
-        e.printStackTrace();
-      }
     }
 
     return null;
   }
+
+  /**
+   * Builds a protected resource request for the given endpoint, authorized with the given access token using the
+   * authorization request header field method.
+   *
+   * @param resourceEndpoint The endpoint of the protected resource to access
+   * @param accessToken A valid access token with the necessary scopes required to access the protected resource
+   * @return The request, ready to be executed
+   */
+  public static HttpPost createProtectedResourceRequest(String resourceEndpoint, String accessToken) {
+
+    // Add authorization header to POST request
+    HttpPost httpPost = new HttpPost(resourceEndpoint);
+    httpPost.addHeader("Authorization", "Bearer " + accessToken);
+
+    /*
+     * Note: The addition of the "method=get" URL-encoded form parameter is necessary for the Facebook Graph APIs.
+     *       Other OAuth 2 providers may not require this, and some may even reject it.
+     */
+    List<NameValuePair> urlParameters = new ArrayList<>();
+    urlParameters.add(new BasicNameValuePair("method", "get"));
+    httpPost.setEntity(new UrlEncodedFormEntity(urlParameters, StandardCharsets.UTF_8));
+
+    return httpPost;
+  }
+
+  /**
+   * Consumes any remaining content of the given response and closes it, releasing its connection back to the shared
+   * connection pool so that it may be kept alive and reused.
+   *
+   * @param httpResponse The response to close; may be null if the request never completed
+   */
+  private static void closeResponse(CloseableHttpResponse httpResponse) {
+    if (httpResponse == null) {
+      return;
+    }
+
+    try {
+      EntityUtils.consume(httpResponse.getEntity());
+      httpResponse.close();
+    } catch (IOException e) {
+      log.severe("Fatal exception occurred while closing HTTP response: " + e.getMessage());
+      e.printStackTrace();
+    }
+  }
 }
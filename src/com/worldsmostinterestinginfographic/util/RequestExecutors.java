@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import com.google.appengine.api.ThreadManager;
+
+import com.worldsmostinterestinginfographic.model.Model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded thread pools used to run a single request's work off of its request thread.
+ *
+ * Pool threads are created through <code>ThreadManager.currentRequestThreadFactory()</code> rather than with plain
+ * <code>new Thread</code>, since only such threads may call App Engine APIs (e.g. the memcache writes made when
+ * statistics are cached).  A request thread belongs to the request that created it and cannot outlive it, so pools are
+ * never shared between requests: each request creates its own, on its own request thread, runs only its own work on
+ * them, and shuts them down once it has finished (see <code>shutdown()</code>), at which point their threads exit.
+ * Work that must outlive the request that starts it belongs in a task queue task instead, which is a request of its
+ * own.
+ *
+ * Threads are only created as work is submitted, up to <code>Model.GRAPH_REQUEST_THREADS</code> threads for Graph
+ * requests and <code>Model.STATISTICS_THREADS</code> for collecting statistics, plus one for timeouts and deadlines.
+ * Work submitted after shutdown is silently dropped, as nothing is left waiting on it by then.
+ *
+ * This class is thread-safe.
+ */
+public final class RequestExecutors {
+
+  // How long an idle pool thread waits for more work before retiring
+  private static final long IDLE_THREAD_KEEP_ALIVE_MILLIS = 100;
+
+  private final ExecutorService graphRequestExecutor;
+  private final ExecutorService statisticsExecutor;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * Creates the pools for the current request.  Must be called on the request's own thread, or one of its request
+   * threads.
+   *
+   * @throws IllegalStateException If the calling thread is not bound to a request
+   */
+  public RequestExecutors() {
+    ThreadFactory requestThreadFactory = ThreadManager.currentRequestThreadFactory();
+    if (requestThreadFactory == null) {
+      throw new IllegalStateException("Not called on behalf of a request");
+    }
+
+    graphRequestExecutor =
+        newThreadPool(Model.GRAPH_REQUEST_THREADS, newThreadFactory(requestThreadFactory, "graph-request"));
+    statisticsExecutor = newThreadPool(Model.STATISTICS_THREADS, newThreadFactory(requestThreadFactory, "statistics"));
+    scheduler = newScheduler(newThreadFactory(requestThreadFactory, "scheduler"));
+  }
+
+  /**
+   * Returns the executor used to make (blocking) requests to the Facebook Graph APIs.
+   *
+   * @return The request's Graph request executor
+   */
+  public ExecutorService getGraphRequestExecutor() {
+    return graphRequestExecutor;
+  }
+
+  /**
+   * Returns the executor used to collect statistics.  As collecting statistics is purely CPU-bound, the pool is sized
+   * by <code>Model.STATISTICS_THREADS</code> to the number of available processors by default.  Work completed on the
+   * pool (e.g. caching the finished statistics) may call App Engine APIs, as its threads are request threads.
+   *
+   * @return The request's statistics executor
+   */
+  public ExecutorService getStatisticsExecutor() {
+    return statisticsExecutor;
+  }
+
+  /**
+   * Returns the scheduler used for timeouts and deadlines.  Tasks run on the scheduler must be short and must never
+   * block.
+   *
+   * @return The request's scheduler
+   */
+  public ScheduledExecutorService getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Arranges for the given future to be completed exceptionally with a <code>TimeoutException</code> if it has not
+   * completed within the given time.  Anything depending on the future (including cancellation hooks registered with
+   * <code>whenComplete</code>) is notified as usual.
+   *
+   * @param future The future to time out
+   * @param timeoutMillis The time to allow, in milliseconds
+   * @param <T> The type of the future's result
+   * @return The given future
+   */
+  public <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future, long timeoutMillis) {
+    if (future.isDone()) {
+      return future;
+    }
+
+    final ScheduledFuture<?> timeout = scheduler.schedule(
+        () -> future.completeExceptionally(new TimeoutException("Timed out after " + timeoutMillis + "ms")),
+        timeoutMillis, TimeUnit.MILLISECONDS);
+    future.whenComplete((result, throwable) -> timeout.cancel(false));
+
+    return future;
+  }
+
+  /**
+   * Shuts the pools down once the request has no more use for them.  Work already running is left to finish, pending
+   * timeouts and deadlines are dropped, and the pools' threads exit as soon as they are idle.
+   */
+  public void shutdown() {
+    graphRequestExecutor.shutdown();
+    statisticsExecutor.shutdown();
+    scheduler.shutdown();
+  }
+
+  /**
+   * Creates a pool of at most the given number of threads, none of which are kept alive once idle.
+   *
+   * @param threads The maximum number of threads in the pool
+   * @param threadFactory The factory to create the pool's threads with
+   * @return A new thread pool
+   */
+  private static ExecutorService newThreadPool(int threads, ThreadFactory threadFactory) {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_KEEP_ALIVE_MILLIS,
+                                                     TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory,
+                                                     new ThreadPoolExecutor.DiscardPolicy());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Creates a single-threaded scheduler whose thread is not kept alive once idle, and which drops its pending tasks on
+   * shutdown.
+   *
+   * @param threadFactory The factory to create the scheduler's thread with
+   * @return A new scheduler
+   */
+  private static ScheduledExecutorService newScheduler(ThreadFactory threadFactory) {
+    ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(1, threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+    scheduler.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+    scheduler.allowCoreThreadTimeOut(true);
+    scheduler.setRemoveOnCancelPolicy(true);
+    scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    return scheduler;
+  }
+
+  /**
+   * Creates a thread factory producing threads of the given request thread factory, with the given name prefix.
+   *
+   * @param requestThreadFactory The current request's thread factory
+   * @param prefix The prefix to use for the names of the created threads
+   * @return A new thread factory
+   */
+  private static ThreadFactory newThreadFactory(final ThreadFactory requestThreadFactory, final String prefix) {
+    return new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = requestThreadFactory.newThread(runnable);
+        if (thread != null) {
+          thread.setName(prefix + "-" + count.incrementAndGet());
+        }
+        return thread;
+      }
+    };
+  }
+}
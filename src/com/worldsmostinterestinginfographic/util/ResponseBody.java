@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The fully-read body of an HTTP response.
+ *
+ * The body is read exactly once, in linear time, into a single byte array.  When the response declares its
+ * Content-Length the array is allocated at exactly that size and filled in place; otherwise the body is read into a
+ * reusable, per-thread buffer and copied out once at its final size.  Callers may then take the body as a stream, as
+ * raw bytes, or as characters, without any further copies of the raw data.  Decoding to characters happens at most
+ * once.
+ */
+public final class ResponseBody {
+
+  private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+  private static final int MAX_REUSABLE_BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<byte[]> readBuffer = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[DEFAULT_BUFFER_SIZE];
+    }
+  };
+
+  private static final ResponseHandler<ResponseBody> HANDLER = new ResponseHandler<ResponseBody>() {
+    @Override
+    public ResponseBody handleResponse(HttpResponse httpResponse) throws IOException {
+      return read(httpResponse.getEntity());
+    }
+  };
+
+  private final byte[] bytes;
+  private final Charset charset;
+  private String content;
+
+  private ResponseBody(byte[] bytes, Charset charset) {
+    this.bytes = bytes;
+    this.charset = charset;
+  }
+
+  /**
+   * Returns a response handler that reads the full body of a response.
+   *
+   * @return A response handler producing a <code>ResponseBody</code>
+   */
+  public static ResponseHandler<ResponseBody> handler() {
+    return HANDLER;
+  }
+
+  /**
+   * Reads the full content of the given entity.
+   *
+   * @param entity The entity to read; may be null, in which case the body is empty
+   * @return The response body
+   * @throws IOException If the entity content could not be read
+   */
+  public static ResponseBody read(HttpEntity entity) throws IOException {
+    if (entity == null) {
+      return new ResponseBody(new byte[0], StandardCharsets.UTF_8);
+    }
+
+    Charset charset = StandardCharsets.UTF_8;
+    ContentType contentType = ContentType.get(entity);
+    if (contentType != null && contentType.getCharset() != null) {
+      charset = contentType.getCharset();
+    }
+
+    try (InputStream inputStream = entity.getContent()) {
+      long contentLength = entity.getContentLength();
+      if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+        return new ResponseBody(readExactly(inputStream, (int) contentLength), charset);
+      }
+
+      return new ResponseBody(readFully(inputStream), charset);
+    }
+  }
+
+  /**
+   * Returns a stream over the body.  The stream reads directly from the underlying bytes.
+   *
+   * @return A new stream over the body
+   */
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(bytes);
+  }
+
+  /**
+   * Returns a character stream over the body, decoded with the response's charset as it is read.
+   *
+   * @return A new character stream over the body
+   */
+  public Reader getReader() {
+    return new InputStreamReader(getInputStream(), charset);
+  }
+
+  /**
+   * Returns the raw bytes of the body.  The returned array is not copied and must not be modified.
+   *
+   * @return The raw bytes of the body
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the body decoded with the response's charset.  The body is decoded once, on first access.
+   *
+   * @return The decoded body
+   */
+  public CharSequence getContent() {
+    if (content == null) {
+      content = new String(bytes, charset);
+    }
+
+    return content;
+  }
+
+  public int length() {
+    return bytes.length;
+  }
+
+  @Override
+  public String toString() {
+    return getContent().toString();
+  }
+
+  /**
+   * Reads a body of known length directly into an array of exactly that size.  Should the stream end early, the result
+   * is truncated to what was actually received.
+   */
+  private static byte[] readExactly(InputStream inputStream, int contentLength) throws IOException {
+    byte[] bytes = new byte[contentLength];
+    int offset = 0;
+    int read;
+    while (offset < contentLength && (read = inputStream.read(bytes, offset, contentLength - offset)) != -1) {
+      offset += read;
+    }
+
+    return offset == contentLength ? bytes : Arrays.copyOf(bytes, offset);
+  }
+
+  /**
+   * Reads a body of unknown length into the per-thread buffer, growing it geometrically as needed, and copies out the
+   * result once at its final size.
+   */
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    byte[] buffer = readBuffer.get();
+    int length = 0;
+    int read;
+    while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+      length += read;
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+
+    // Hold on to a grown buffer for the next response on this thread, within reason
+    if (buffer.length <= MAX_REUSABLE_BUFFER_SIZE) {
+      readBuffer.set(buffer);
+    }
+
+    return Arrays.copyOf(buffer, length);
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for the hand-written wire formats of cached objects (see <code>User.writeExternal</code> and
+ * <code>Post.writeExternal</code>).
+ *
+ * Each format starts with a version byte, so that an entry written by an older (or newer) version of a class is
+ * rejected rather than misread.  Lengths and counts are written as variable-length integers (7 bits per byte, least
+ * significant group first), and strings as their UTF-8 length followed by their UTF-8 bytes, which unlike
+ * <code>DataOutput.writeUTF</code> has no 64 KB limit.
+ */
+public enum SerializationUtils {
+  INSTANCE;
+
+  /**
+   * Writes the version byte of a wire format.
+   *
+   * @param out The output to write to
+   * @param version The version of the format
+   */
+  public static void writeVersion(DataOutput out, byte version) throws IOException {
+    out.writeByte(version);
+  }
+
+  /**
+   * Reads the version byte of a wire format and checks that it is the one expected.
+   *
+   * @param in The input to read from
+   * @param version The version of the format that the reader understands
+   * @param type The class being read, for the error message
+   * @throws InvalidClassException If the version read is not the one expected
+   */
+  public static void readVersion(DataInput in, byte version, Class<?> type) throws IOException {
+    byte read = in.readByte();
+    if (read != version) {
+      throw new InvalidClassException(type.getName(), "Unsupported wire format version " + read);
+    }
+  }
+
+  /**
+   * Writes a non-negative integer in as few bytes as it needs (one byte for values below 128).
+   *
+   * @param out The output to write to
+   * @param value The value to write, which must not be negative
+   */
+  public static void writeVarInt(DataOutput out, int value) throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value " + value);
+    }
+
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Reads an integer written by <code>writeVarInt</code>.
+   *
+   * @param in The input to read from
+   * @return The value read
+   * @throws StreamCorruptedException If the value is longer than an integer can be
+   */
+  public static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new StreamCorruptedException("Malformed variable-length integer");
+  }
+
+  /**
+   * Writes a string, which may be null.
+   *
+   * @param out The output to write to
+   * @param value The string to write, or null
+   */
+  public static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      writeVarInt(out, 0);
+      return;
+    }
+
+    // Lengths are written off by one, leaving 0 to stand for null
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(out, bytes.length + 1);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by <code>writeString</code>.
+   *
+   * @param in The input to read from
+   * @return The string read, or null if a null string was written
+   */
+  public static String readString(DataInput in) throws IOException {
+    int length = readVarInt(in);
+    if (length == 0) {
+      return null;
+    } else if (length < 0) {
+      throw new StreamCorruptedException("Malformed string length");
+    }
+
+    byte[] bytes = new byte[length - 1];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
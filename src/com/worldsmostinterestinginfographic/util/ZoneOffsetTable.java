@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worldsmostinterestinginfographic.util;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A precomputed table of the UTC offsets of a time zone over the lifetime of Facebook, for converting times to local
+ * time with an array lookup rather than creating a <code>ZonedDateTime</code> per time.
+ *
+ * The table holds every offset transition of the zone from the launch of Facebook (which no post can predate) until a
+ * year from when the table was built.  Times outside of that range take the offset in effect at the nearer end.
+ * Tables are immutable, and are built once per zone and shared.
+ */
+public final class ZoneOffsetTable implements Serializable {
+
+  // 2004-01-01T00:00:00Z, shortly before Facebook was launched
+  private static final long FROM_EPOCH_SECONDS = 1072915200L;
+  private static final long SECONDS_PER_YEAR = 365L * DateTimeUtils.SECONDS_PER_DAY;
+
+  private static final ConcurrentMap<ZoneId, ZoneOffsetTable> tables = new ConcurrentHashMap<>();
+
+  public static final ZoneOffsetTable UTC = new ZoneOffsetTable(new long[0], new int[] { 0 }, Long.MAX_VALUE);
+
+  // transitions[i] is the time at which offsets[i + 1] takes over from offsets[i]
+  private final long[] transitions;
+  private final int[] offsets;
+  private final long coveredUntil;
+
+  private ZoneOffsetTable(long[] transitions, int[] offsets, long coveredUntil) {
+    this.transitions = transitions;
+    this.offsets = offsets;
+    this.coveredUntil = coveredUntil;
+  }
+
+  /**
+   * Returns the offset table of the given time zone.
+   *
+   * @param zone The time zone, or null for UTC
+   * @return The zone's offset table
+   */
+  public static ZoneOffsetTable forZone(ZoneId zone) {
+    if (zone == null || zone.normalized().equals(ZoneOffset.UTC)) {
+      return UTC;
+    }
+
+    // Rebuild tables once they no longer cover the near future
+    ZoneOffsetTable table = tables.get(zone);
+    long now = System.currentTimeMillis() / 1000;
+    if (table == null || table.coveredUntil < now + DateTimeUtils.SECONDS_PER_DAY) {
+      table = build(zone, now + SECONDS_PER_YEAR);
+      tables.put(zone, table);
+    }
+
+    return table;
+  }
+
+  /**
+   * Converts the given time to local time, i.e. shifts it by the offset in effect at that time.
+   *
+   * @param epochSeconds The number of seconds since the epoch
+   * @return The number of seconds since the epoch of the same local date and time in UTC
+   */
+  public long toLocal(long epochSeconds) {
+    return epochSeconds + getOffsetSeconds(epochSeconds);
+  }
+
+  /**
+   * Returns the offset from UTC in effect at the given time.
+   *
+   * @param epochSeconds The number of seconds since the epoch
+   * @return The offset, in seconds
+   */
+  public int getOffsetSeconds(long epochSeconds) {
+    if (transitions.length == 0) {
+      return offsets[0];
+    }
+
+    // Either the index of the transition at the given time, or (-(insertion point) - 1)
+    int index = Arrays.binarySearch(transitions, epochSeconds);
+    return offsets[index >= 0 ? index + 1 : -index - 1];
+  }
+
+  private static ZoneOffsetTable build(ZoneId zone, long coveredUntil) {
+    ZoneRules rules = zone.getRules();
+    Instant from = Instant.ofEpochSecond(FROM_EPOCH_SECONDS);
+
+    long[] transitions = new long[16];
+    int[] offsets = new int[17];
+    offsets[0] = rules.getOffset(from).getTotalSeconds();
+    int count = 0;
+
+    ZoneOffsetTransition transition = rules.nextTransition(from);
+    while (transition != null && transition.toEpochSecond() <= coveredUntil) {
+      if (count == transitions.length) {
+        transitions = Arrays.copyOf(transitions, count * 2);
+        offsets = Arrays.copyOf(offsets, count * 2 + 1);
+      }
+
+      transitions[count] = transition.toEpochSecond();
+      offsets[++count] = transition.getOffsetAfter().getTotalSeconds();
+      transition = rules.nextTransition(transition.getInstant());
+    }
+
+    return new ZoneOffsetTable(Arrays.copyOf(transitions, count), Arrays.copyOf(offsets, count + 1), coveredUntil);
+  }
+}
@@ -100,7 +100,7 @@
 </div>
 <%@include file="/WEB-INF/jsp/inc/scripts.jsp" %>
 <script>
-    $.getJSON( "/stats", function( data ) {
+    $.ajax({ url: "/stats", dataType: "json", timeout: 15000 }).done(function( data ) {
 
         // Get rid of the spinner
         $('#content').show();
@@ -114,6 +114,12 @@
         initMonthlyPostFrequencyChart(data.MONTHLY_POST_FREQUENCY);
         initWordChart(data.TOP_WORDS);
 
+    }).fail(function() {
+
+        // Don't leave the user staring at the spinner forever
+        $('#waitscreen').hide();
+        $('#error').show();
+
     });
 </script>
 </body>
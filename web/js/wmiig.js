@@ -3,6 +3,9 @@
  */
 jQuery(function() {
 
+    // Remember the browser's time zone for bucketing statistics
+    rememberTimeZone();
+
     // Initialize page properties
 	initSameHeight();
 	initSetBackground();
@@ -15,6 +18,21 @@ jQuery(function() {
 
 });
 
+/**
+ * Remember the browser's time zone in a cookie, so that the user's statistics can be bucketed by day and month in their
+ * own time zone rather than in UTC.
+ */
+function rememberTimeZone() {
+    try {
+        var timeZone = Intl.DateTimeFormat().resolvedOptions().timeZone;
+        if (timeZone) {
+            document.cookie = 'tz=' + encodeURIComponent(timeZone) + '; path=/; max-age=31536000';
+        }
+    } catch (e) {
+        // Not supported by the browser; the time zone on the user's Facebook profile will be used instead
+    }
+}
+
 /**
  * Align block height.
  */
@@ -946,7 +964,9 @@ function initWordChart(topWords) {
     }
 
     $('#top-words').html(topWords.html);
-    $('#top-word').html("&quot;" + topWords.topword + "&quot;");
+    if (topWords.topword != null) {
+        $('#top-word').html("&quot;" + topWords.topword + "&quot;");
+    }
 }
 
 /*